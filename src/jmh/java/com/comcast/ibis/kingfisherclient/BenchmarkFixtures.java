@@ -0,0 +1,58 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+import com.comcast.ibis.kingfisher.DeviceMetadata;
+import com.comcast.ibis.kingfisher.DeviceReference;
+import com.comcast.ibis.kingfisher.OwnerReference;
+import com.comcast.ibis.kingfisher.RackData;
+import com.comcast.ibis.kingfisher.UserReference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The type Benchmark fixtures. Synthetic inventories for the benchmarks and the
+ * {@link FakeKingfisherServer}.
+ */
+final class BenchmarkFixtures {
+    static final String ORG = "bench";
+    static final String[] MAKES = {"Samsung", "LG", "Sony", "Vizio", "Roku", "Comcast"};
+    static final String[] ENVIRONMENTS = {"prod", "stage", "dev"};
+
+    private BenchmarkFixtures() { }
+
+    /**
+     * A reproducible inventory.
+     *
+     * @param size the number of devices
+     * @return the devices
+     */
+    static List<DeviceData> devices(int size) {
+        Random random = new Random(42);
+        List<DeviceData> devices = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String make = MAKES[random.nextInt(MAKES.length)];
+            DeviceMetadata.Builder metadata = DeviceMetadata.newBuilder()
+                    .setName("device-" + i)
+                    .putLabels("env", ENVIRONMENTS[random.nextInt(ENVIRONMENTS.length)])
+                    .putLabels("team", "team-" + random.nextInt(20));
+            if (i % 2 == 0) {
+                metadata.setOwner(OwnerReference.newBuilder()
+                        .setUser(UserReference.newBuilder().setOrg(ORG).setUser("user-" + (i % 50))));
+            }
+            devices.add(DeviceData.newBuilder()
+                    .setReference(DeviceReference.newBuilder().setOrg(ORG).setDevice("id-" + i))
+                    .setMetadata(metadata)
+                    .setDevice(com.comcast.ibis.kingfisher.Device.newBuilder()
+                            .setDeviceId("id-" + i)
+                            .setDeviceModel(make + "-model-" + random.nextInt(8)))
+                    .setRackdata(RackData.newBuilder()
+                            .setDeviceMake(make)
+                            .setRackName("rack-" + random.nextInt(40))
+                            .setSlotName("slot-" + random.nextInt(16)))
+                    .build());
+        }
+        return devices;
+    }
+}
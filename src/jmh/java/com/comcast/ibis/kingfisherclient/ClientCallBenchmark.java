@@ -0,0 +1,132 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.CheckAliveResponse;
+import com.comcast.ibis.kingfisher.KingfisherGrpc;
+import com.comcast.ibis.kingfisherclient.common.Utils;
+import com.google.protobuf.ByteString;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Client call benchmark. Unary and batch device calls end to end against an in-process
+ * server, with the interceptors the client installs switched on one at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientCallBenchmark {
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    /**
+     * none: bare channel; credentials: the auth header; metrics: credentials and metrics;
+     * hedging: credentials and hedging with a delay long enough that no hedge is sent.
+     */
+    @Param({"none", "credentials", "metrics", "hedging"})
+    private String interceptors;
+
+    private FakeKingfisherServer server;
+    private ManagedChannel channel;
+    private ScheduledExecutorService scheduler;
+    private List<Device> devices;
+    private Device device;
+
+    @Setup
+    public void setup() throws IOException {
+        String name = "client-call-benchmark-" + interceptors;
+        server = FakeKingfisherServer.newBuilder()
+                .setInProcess(name)
+                .setDevices(64)
+                .setAuthorizationRequired(false)
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        KingfisherGrpc.KingfisherBlockingStub stub = KingfisherGrpc.newBlockingStub(channel);
+        if (!"none".equals(interceptors)) {
+            TokenCredentials credentials = new TokenCredentials("token", KingfisherClient.KingfisherClientBuilder.TokenType.APIKEY);
+            stub = stub.withInterceptors(new ClientInterceptor() {
+                @Override
+                public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions, Channel channel) {
+                    return channel.newCall(methodDescriptor, callOptions.withCallCredentials(credentials));
+                }
+            });
+        }
+        if ("hedging".equals(interceptors)) {
+            stub = stub.withInterceptors(new HedgingInterceptor(HedgingPolicy.newBuilder()
+                    .setDelay(10, TimeUnit.SECONDS)
+                    .build(), scheduler));
+        }
+        if ("metrics".equals(interceptors)) {
+            stub = stub.withInterceptors(new MetricsInterceptor(new ClientMetrics()));
+        }
+
+        devices = Utils.deviceList(server.getInventory(), stub, new ConcurrentHashMap<>());
+        device = devices.get(0);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow();
+        server.close();
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public CheckAliveResponse checkAlive() {
+        return device.checkAlive();
+    }
+
+    @Benchmark
+    public void pressKey() {
+        device.pressKey("OK");
+    }
+
+    @Benchmark
+    public String deeplink() {
+        return device.deeplink("app://home");
+    }
+
+    @Benchmark
+    public ByteString screenshot() {
+        return device.screenshot();
+    }
+
+    @Benchmark
+    public Object checkAliveBatch() {
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[devices.size()];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = devices.get(i).checkAliveAsync(DIRECT_EXECUTOR);
+        }
+        return CompletableFuture.allOf(calls).join();
+    }
+}
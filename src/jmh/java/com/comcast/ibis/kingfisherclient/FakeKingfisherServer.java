@@ -0,0 +1,747 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.AliveStatus;
+import com.comcast.ibis.kingfisher.BeaconUnlockDeviceRequest;
+import com.comcast.ibis.kingfisher.BeaconUnlockDeviceResponse;
+import com.comcast.ibis.kingfisher.CheckAliveRequest;
+import com.comcast.ibis.kingfisher.CheckAliveResponse;
+import com.comcast.ibis.kingfisher.DeeplinkOutput;
+import com.comcast.ibis.kingfisher.DeeplinkRequest;
+import com.comcast.ibis.kingfisher.DeeplinkResponse;
+import com.comcast.ibis.kingfisher.DeviceData;
+import com.comcast.ibis.kingfisher.DeviceMetadata;
+import com.comcast.ibis.kingfisher.DeviceReservation;
+import com.comcast.ibis.kingfisher.GetDeviceRequest;
+import com.comcast.ibis.kingfisher.GetDeviceResponse;
+import com.comcast.ibis.kingfisher.GetDevicesRequest;
+import com.comcast.ibis.kingfisher.GetDevicesResponse;
+import com.comcast.ibis.kingfisher.KingfisherGrpc;
+import com.comcast.ibis.kingfisher.LaunchAppRequest;
+import com.comcast.ibis.kingfisher.LaunchAppResponse;
+import com.comcast.ibis.kingfisher.LockDeviceRequest;
+import com.comcast.ibis.kingfisher.LockDeviceResponse;
+import com.comcast.ibis.kingfisher.PressKeyRequest;
+import com.comcast.ibis.kingfisher.PressKeyResponse;
+import com.comcast.ibis.kingfisher.QueryDevicesRequest;
+import com.comcast.ibis.kingfisher.QueryDevicesResponse;
+import com.comcast.ibis.kingfisher.RebootRequest;
+import com.comcast.ibis.kingfisher.RebootResponse;
+import com.comcast.ibis.kingfisher.ScreenshotOutput;
+import com.comcast.ibis.kingfisher.ScreenshotRequest;
+import com.comcast.ibis.kingfisher.ScreenshotResponse;
+import com.comcast.ibis.kingfisher.SimulateVoiceInputRequest;
+import com.comcast.ibis.kingfisher.SimulateVoiceInputResponse;
+import com.comcast.ibis.kingfisher.UnlockDeviceRequest;
+import com.comcast.ibis.kingfisher.UnlockDeviceResponse;
+import com.comcast.ibis.kingfisher.UserReference;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The type Fake kingfisher server. A stand-in backend for load and concurrency testing: a
+ * synthetic inventory of devices with reservations that contend and expire, simulated call
+ * latency, injected failures, and a stub of the authority service the client looks its user up
+ * from. It serves on localhost, where the client connects in plaintext, or in-process.
+ */
+final class FakeKingfisherServer implements AutoCloseable {
+    private static final Metadata.Key<String> AUTHORIZATION = Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+    private static final Context.Key<String> CALLER = Context.key("kingfisher-caller");
+
+    private final FakeKingfisherServerBuilder builder;
+    private final Map<String, SimulatedDevice> devices;
+    private final List<DeviceData> inventory;
+    private final ScreenshotResponse screenshot;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+    private final AtomicLong lockConflicts = new AtomicLong();
+    private final AtomicLong expiredLeases = new AtomicLong();
+    private final Set<String> unavailableMethods = ConcurrentHashMap.newKeySet();
+
+    private Server server;
+    private HttpServer authority;
+
+    private FakeKingfisherServer(FakeKingfisherServerBuilder builder) {
+        this.builder = builder;
+        this.inventory = Collections.unmodifiableList(BenchmarkFixtures.devices(builder.devices));
+        this.devices = new LinkedHashMap<>();
+        for (DeviceData device : inventory) {
+            devices.put(device.getReference().getDevice(), new SimulatedDevice(device));
+        }
+        byte[] image = new byte[builder.screenshotBytes];
+        new Random(7).nextBytes(image);
+        this.screenshot = ScreenshotResponse.newBuilder()
+                .setResult(ScreenshotOutput.newBuilder().setImage(ByteString.copyFrom(image)))
+                .build();
+        this.scheduler = Executors.newScheduledThreadPool(builder.threads, runnable -> {
+            Thread thread = new Thread(runnable, "fake-kingfisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start the grpc server and the authority stub.
+     *
+     * @return the fake kingfisher server
+     * @throws IOException the io exception
+     */
+    FakeKingfisherServer start() throws IOException {
+        ServerInterceptor authorize = new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+                String method = call.getMethodDescriptor().getFullMethodName();
+                if (unavailableMethods.contains(method.substring(method.lastIndexOf('/') + 1))) {
+                    call.close(Status.UNAVAILABLE.withDescription("method unavailable"), new Metadata());
+                    return new ServerCall.Listener<ReqT>() { };
+                }
+                String authorization = headers.get(AUTHORIZATION);
+                if (authorization == null || authorization.isEmpty()) {
+                    if (!builder.authorizationRequired) {
+                        return next.startCall(call, headers);
+                    }
+                    call.close(Status.UNAUTHENTICATED.withDescription("missing authorization"), new Metadata());
+                    return new ServerCall.Listener<ReqT>() { };
+                }
+                return Contexts.interceptCall(Context.current().withValue(CALLER, authorization), call, headers, next);
+            }
+        };
+        Service service = new Service();
+        if (builder.inProcessName != null) {
+            server = InProcessServerBuilder.forName(builder.inProcessName)
+                    .addService(ServerInterceptors.intercept(service, authorize))
+                    .build()
+                    .start();
+        } else {
+            server = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+                    .addService(ServerInterceptors.intercept(service, authorize))
+                    .build()
+                    .start();
+        }
+
+        authority = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        authority.createContext("/users/current", exchange -> {
+            byte[] body = ("{\"result\":{\"org\":\"" + BenchmarkFixtures.ORG + "\",\"id\":\"" + builder.user
+                    + "\",\"name\":\"" + builder.user + "\"}}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        authority.start();
+        return this;
+    }
+
+    /**
+     * Gets target.
+     *
+     * @return the host to hand the client, e.g. "localhost:50051", or the in-process server name
+     */
+    String getTarget() {
+        return (builder.inProcessName != null) ? builder.inProcessName : "localhost:" + server.getPort();
+    }
+
+    /**
+     * Gets authority host.
+     *
+     * @return the url of the authority stub, for {@link KingfisherClient.KingfisherClientBuilder#setAuthorityHost}
+     */
+    String getAuthorityHost() {
+        return "http://localhost:" + authority.getAddress().getPort();
+    }
+
+    /**
+     * Gets inventory.
+     *
+     * @return the simulated devices
+     */
+    List<DeviceData> getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Take a device off or back on line, as its check alive reports.
+     *
+     * @param deviceId the device id
+     * @param live     whether the device is live
+     */
+    void setLive(String deviceId, boolean live) {
+        device(deviceId).live = live;
+    }
+
+    /**
+     * Make every call to a method fail as unavailable, or serve it again, e.g. to exercise a
+     * fallback.
+     *
+     * @param method      the Kingfisher method name, e.g. "UnlockDevice"
+     * @param unavailable whether calls to the method fail
+     */
+    void setUnavailable(String method, boolean unavailable) {
+        if (unavailable) {
+            unavailableMethods.add(method);
+        } else {
+            unavailableMethods.remove(method);
+        }
+    }
+
+    /**
+     * Gets calls.
+     *
+     * @return the number of calls served, including failed ones
+     */
+    long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Gets injected failures.
+     *
+     * @return the number of calls failed on purpose
+     */
+    long getInjectedFailures() {
+        return injectedFailures.get();
+    }
+
+    /**
+     * Gets lock conflicts.
+     *
+     * @return the number of lock requests refused because another reservation held the device
+     */
+    long getLockConflicts() {
+        return lockConflicts.get();
+    }
+
+    /**
+     * Gets expired leases.
+     *
+     * @return the number of reservations that ran out before being renewed or released
+     */
+    long getExpiredLeases() {
+        return expiredLeases.get();
+    }
+
+    @Override
+    public void close() {
+        if (authority != null) {
+            authority.stop(0);
+        }
+        try {
+            if (server != null) {
+                server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * New builder fake kingfisher server builder.
+     *
+     * @return the fake kingfisher server builder
+     */
+    static FakeKingfisherServerBuilder newBuilder() {
+        return new FakeKingfisherServerBuilder();
+    }
+
+    /**
+     * Answer a call after the simulated latency, or fail it when a failure is injected. Failures
+     * are decided before the call has any effect, like a request that never reached a device.
+     */
+    private <T> void respond(StreamObserver<T> observer, Supplier<T> handler) {
+        calls.incrementAndGet();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = builder.latencyNanos;
+        if (builder.jitterNanos > 0) {
+            delay += (long) (-Math.log(1 - random.nextDouble()) * builder.jitterNanos);
+        }
+        if (builder.slowRate > 0 && random.nextDouble() < builder.slowRate) {
+            delay += builder.slowNanos;
+        }
+        boolean fail = builder.failureRate > 0 && random.nextDouble() < builder.failureRate;
+
+        Runnable answer = () -> {
+            if (fail) {
+                injectedFailures.incrementAndGet();
+                observer.onError(builder.failureCode.toStatus().withDescription("injected failure").asRuntimeException());
+                return;
+            }
+            T response;
+            try {
+                response = handler.get();
+            } catch (RuntimeException e) {
+                observer.onError(Status.fromThrowable(e).asRuntimeException());
+                return;
+            }
+            observer.onNext(response);
+            observer.onCompleted();
+        };
+        if (delay <= 0) {
+            answer.run();
+        } else {
+            scheduler.schedule(answer, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private SimulatedDevice device(String deviceId) {
+        SimulatedDevice device = devices.get(deviceId);
+        if (device == null) {
+            throw Status.NOT_FOUND.withDescription("device " + deviceId + " not found").asRuntimeException();
+        }
+        return device;
+    }
+
+    /**
+     * Filter keys this server understands, spelled out independently of the client's
+     * {@link SearchPredicate.Field} keys so a mismatch shows up as a rejected query.
+     */
+    private static final Map<String, Function<DeviceData, String>> FILTER_KEYS = new LinkedHashMap<>();
+
+    static {
+        FILTER_KEYS.put("reference.device", d -> d.getReference().getDevice());
+        FILTER_KEYS.put("metadata.name", d -> d.getMetadata().getName());
+        FILTER_KEYS.put("device.device_model", d -> d.getDevice().getDeviceModel());
+        FILTER_KEYS.put("rackdata.device_make", d -> d.getRackdata().getDeviceMake());
+        FILTER_KEYS.put("rackdata.rack_name", d -> d.getRackdata().getRackName());
+    }
+
+    private static final String LABEL_FILTER_PREFIX = "metadata.labels.";
+
+    private static boolean matches(DeviceData device, Map<String, String> filter) {
+        for (Map.Entry<String, String> entry : filter.entrySet()) {
+            String key = entry.getKey();
+            String value;
+            if (FILTER_KEYS.containsKey(key)) {
+                value = FILTER_KEYS.get(key).apply(device);
+            } else if (key.startsWith(LABEL_FILTER_PREFIX)) {
+                value = device.getMetadata().getLabelsOrDefault(key.substring(LABEL_FILTER_PREFIX.length()), null);
+            } else {
+                throw Status.INVALID_ARGUMENT.withDescription("unknown filter key " + key).asRuntimeException();
+            }
+            if (!Objects.equals(value, entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The reservation state of one device. Leases expire lazily, when the device is next touched.
+     */
+    private final class SimulatedDevice {
+        private final DeviceData data;
+        private volatile boolean live = true;
+        private String secret;
+        private UserReference user;
+        private long expiresAtMillis;
+
+        private SimulatedDevice(DeviceData data) {
+            this.data = data;
+        }
+
+        private synchronized DeviceMetadata lock(String caller, String requestSecret, int durationSeconds) {
+            expire();
+            boolean renewal = secret != null && secret.equals(requestSecret);
+            if (secret != null && !renewal) {
+                lockConflicts.incrementAndGet();
+                throw Status.FAILED_PRECONDITION.withDescription("device is locked by " + user.getUser()).asRuntimeException();
+            }
+            if (!renewal) {
+                secret = UUID.randomUUID().toString();
+                // the token stands in for the user, so clients with different tokens contend
+                String name = (caller != null) ? caller.substring(caller.indexOf(' ') + 1) : "anonymous";
+                user = UserReference.newBuilder().setOrg(BenchmarkFixtures.ORG).setUser(name).build();
+            }
+            long seconds = (durationSeconds > 0) ? Math.min(durationSeconds, builder.maxLeaseSeconds) : builder.defaultLeaseSeconds;
+            expiresAtMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds);
+            return metadata();
+        }
+
+        private synchronized DeviceMetadata unlock(String requestSecret) {
+            expire();
+            if (secret == null) {
+                return metadata();
+            }
+            if (!secret.equals(requestSecret)) {
+                throw Status.PERMISSION_DENIED.withDescription("reservation secret does not match").asRuntimeException();
+            }
+            secret = null;
+            user = null;
+            return metadata();
+        }
+
+        private synchronized void checkAccess(String requestSecret) {
+            expire();
+            if (secret != null && !secret.equals(requestSecret)) {
+                throw Status.PERMISSION_DENIED.withDescription("device is locked by " + user.getUser()).asRuntimeException();
+            }
+        }
+
+        private synchronized AliveStatus alive() {
+            expire();
+            AliveStatus.Builder status = AliveStatus.newBuilder().setLive(live).setLocked(secret != null);
+            if (user != null) {
+                status.setLockedBy(user);
+            }
+            return status.build();
+        }
+
+        private synchronized DeviceData data() {
+            expire();
+            return (secret == null) ? data : data.toBuilder().setMetadata(metadata()).build();
+        }
+
+        private DeviceMetadata metadata() {
+            if (secret == null) {
+                return data.getMetadata();
+            }
+            return data.getMetadata().toBuilder()
+                    .setReservation(DeviceReservation.newBuilder()
+                            .setUser(user)
+                            .setReservationSecret(secret)
+                            .setExpires(Timestamp.newBuilder()
+                                    .setSeconds(expiresAtMillis / 1000)
+                                    .setNanos((int) (expiresAtMillis % 1000) * 1_000_000)))
+                    .build();
+        }
+
+        private void expire() {
+            if (secret != null && System.currentTimeMillis() >= expiresAtMillis) {
+                expiredLeases.incrementAndGet();
+                secret = null;
+                user = null;
+            }
+        }
+    }
+
+    /**
+     * The type Service. The device calls the client makes, against the simulated devices.
+     */
+    private final class Service extends KingfisherGrpc.KingfisherImplBase {
+
+        @Override
+        public void getDevices(GetDevicesRequest request, StreamObserver<GetDevicesResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                GetDevicesResponse.Builder res = GetDevicesResponse.newBuilder();
+                devices.values().forEach(device -> res.addResult(device.data()));
+                return res.build();
+            });
+        }
+
+        @Override
+        public void getDevice(GetDeviceRequest request, StreamObserver<GetDeviceResponse> responseObserver) {
+            respond(responseObserver, () -> GetDeviceResponse.newBuilder()
+                    .setResult(device(request.getDeviceId()).data())
+                    .build());
+        }
+
+        @Override
+        public void queryDevices(QueryDevicesRequest request, StreamObserver<QueryDevicesResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                QueryDevicesResponse.Builder res = QueryDevicesResponse.newBuilder();
+                for (SimulatedDevice device : devices.values()) {
+                    if (matches(device.data, request.getFilterMap())) {
+                        res.addResult(device.data());
+                    }
+                }
+                return res.build();
+            });
+        }
+
+        @Override
+        public void lockDevice(LockDeviceRequest request, StreamObserver<LockDeviceResponse> responseObserver) {
+            String caller = CALLER.get();
+            respond(responseObserver, () -> LockDeviceResponse.newBuilder()
+                    .setResult(device(request.getDeviceId()).lock(caller, request.getReservationSecret(), request.getDurationSeconds()))
+                    .build());
+        }
+
+        @Override
+        public void unlockDevice(UnlockDeviceRequest request, StreamObserver<UnlockDeviceResponse> responseObserver) {
+            respond(responseObserver, () -> UnlockDeviceResponse.newBuilder()
+                    .setResult(device(request.getDeviceId()).unlock(request.getReservationSecret()))
+                    .build());
+        }
+
+        @Override
+        public void beaconUnlockDevice(BeaconUnlockDeviceRequest request, StreamObserver<BeaconUnlockDeviceResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                if (request.getAuthorization().isEmpty()) {
+                    throw Status.UNAUTHENTICATED.withDescription("missing authorization").asRuntimeException();
+                }
+                return BeaconUnlockDeviceResponse.newBuilder()
+                        .setResult(device(request.getDeviceId()).unlock(request.getRequest().getReservationSecret()))
+                        .build();
+            });
+        }
+
+        @Override
+        public void checkAlive(CheckAliveRequest request, StreamObserver<CheckAliveResponse> responseObserver) {
+            respond(responseObserver, () -> CheckAliveResponse.newBuilder()
+                    .setResult(device(request.getDeviceId()).alive())
+                    .build());
+        }
+
+        @Override
+        public void pressKey(PressKeyRequest request, StreamObserver<PressKeyResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                device(request.getDeviceId()).checkAccess(request.getReservationSecret());
+                return PressKeyResponse.getDefaultInstance();
+            });
+        }
+
+        @Override
+        public void deeplink(DeeplinkRequest request, StreamObserver<DeeplinkResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                device(request.getDeviceId()).checkAccess(request.getReservationSecret());
+                return DeeplinkResponse.newBuilder()
+                        .setResult(DeeplinkOutput.newBuilder().setDeeplink(request.getDeeplink()))
+                        .build();
+            });
+        }
+
+        @Override
+        public void launchApp(LaunchAppRequest request, StreamObserver<LaunchAppResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                device(request.getDeviceId()).checkAccess(request.getReservationSecret());
+                return LaunchAppResponse.getDefaultInstance();
+            });
+        }
+
+        @Override
+        public void reboot(RebootRequest request, StreamObserver<RebootResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                device(request.getDeviceId()).checkAccess(request.getReservationSecret());
+                return RebootResponse.getDefaultInstance();
+            });
+        }
+
+        @Override
+        public void simulateVoiceInput(SimulateVoiceInputRequest request, StreamObserver<SimulateVoiceInputResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                device(request.getDeviceId()).checkAccess(request.getReservationSecret());
+                return SimulateVoiceInputResponse.getDefaultInstance();
+            });
+        }
+
+        @Override
+        public void screenshot(ScreenshotRequest request, StreamObserver<ScreenshotResponse> responseObserver) {
+            respond(responseObserver, () -> {
+                device(request.getDeviceId());
+                return screenshot;
+            });
+        }
+    }
+
+    /**
+     * The type Fake kingfisher server builder.
+     */
+    static final class FakeKingfisherServerBuilder {
+        private int devices = 100;
+        private String user = "load-test";
+        private boolean authorizationRequired = true;
+        private String inProcessName;
+        private int screenshotBytes = 64 * 1024;
+        private int threads = 4;
+        private long latencyNanos;
+        private long jitterNanos;
+        private double slowRate;
+        private long slowNanos;
+        private double failureRate;
+        private Status.Code failureCode = Status.Code.UNAVAILABLE;
+        private int defaultLeaseSeconds = 300;
+        private int maxLeaseSeconds = 3600;
+
+        private FakeKingfisherServerBuilder() { }
+
+        /**
+         * Sets devices.
+         *
+         * @param devices the number of simulated devices
+         * @return the devices
+         */
+        FakeKingfisherServerBuilder setDevices(int devices) {
+            if (devices < 1) {
+                throw new IllegalArgumentException("devices must be positive");
+            }
+            this.devices = devices;
+            return this;
+        }
+
+        /**
+         * Sets user.
+         *
+         * @param user the id the authority stub reports as the current user
+         * @return the user
+         */
+        FakeKingfisherServerBuilder setUser(String user) {
+            this.user = user;
+            return this;
+        }
+
+        /**
+         * Sets authorization required. Calls without an authorization header are refused with
+         * UNAUTHENTICATED unless this is turned off.
+         *
+         * @param authorizationRequired whether calls must carry an authorization header
+         * @return the authorization required
+         */
+        FakeKingfisherServerBuilder setAuthorizationRequired(boolean authorizationRequired) {
+            this.authorizationRequired = authorizationRequired;
+            return this;
+        }
+
+        /**
+         * Serve in-process under a name instead of on a localhost port.
+         *
+         * @param name the in-process server name
+         * @return the in process
+         */
+        FakeKingfisherServerBuilder setInProcess(String name) {
+            this.inProcessName = name;
+            return this;
+        }
+
+        /**
+         * Sets screenshot bytes.
+         *
+         * @param screenshotBytes the size of the screenshots returned
+         * @return the screenshot bytes
+         */
+        FakeKingfisherServerBuilder setScreenshotBytes(int screenshotBytes) {
+            this.screenshotBytes = screenshotBytes;
+            return this;
+        }
+
+        /**
+         * Sets threads.
+         *
+         * @param threads the number of threads answering delayed calls
+         * @return the threads
+         */
+        FakeKingfisherServerBuilder setThreads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("threads must be positive");
+            }
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sets latency. Every call takes the base latency plus an exponentially distributed jitter
+         * with the given mean; zero for both answers calls on the calling thread.
+         *
+         * @param latency the base latency
+         * @param jitter  the mean jitter
+         * @param unit    the unit
+         * @return the latency
+         */
+        FakeKingfisherServerBuilder setLatency(long latency, long jitter, TimeUnit unit) {
+            if (latency < 0 || jitter < 0) {
+                throw new IllegalArgumentException("latency must not be negative");
+            }
+            this.latencyNanos = unit.toNanos(latency);
+            this.jitterNanos = unit.toNanos(jitter);
+            return this;
+        }
+
+        /**
+         * Sets slow calls, a tail on top of the regular latency.
+         *
+         * @param rate  the fraction of calls that are slow
+         * @param extra the additional latency of a slow call
+         * @param unit  the unit
+         * @return the slow calls
+         */
+        FakeKingfisherServerBuilder setSlowCalls(double rate, long extra, TimeUnit unit) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("rate must be between 0 and 1");
+            }
+            this.slowRate = rate;
+            this.slowNanos = unit.toNanos(extra);
+            return this;
+        }
+
+        /**
+         * Sets failure injection.
+         *
+         * @param rate the fraction of calls that fail
+         * @param code the status the failed calls close with
+         * @return the failures
+         */
+        FakeKingfisherServerBuilder setFailures(double rate, Status.Code code) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("rate must be between 0 and 1");
+            }
+            if (code == Status.Code.OK) {
+                throw new IllegalArgumentException("failure code must not be OK");
+            }
+            this.failureRate = rate;
+            this.failureCode = code;
+            return this;
+        }
+
+        /**
+         * Sets lease duration.
+         *
+         * @param defaultDuration the lease granted when a lock request asks for none
+         * @param maxDuration     the longest lease granted
+         * @param unit            the unit, at second granularity
+         * @return the lease duration
+         */
+        FakeKingfisherServerBuilder setLeaseDuration(long defaultDuration, long maxDuration, TimeUnit unit) {
+            if (defaultDuration < 1 || maxDuration < 1 || unit.toSeconds(defaultDuration) < 1) {
+                throw new IllegalArgumentException("lease duration must be at least a second");
+            }
+            this.defaultLeaseSeconds = (int) Math.min(Integer.MAX_VALUE, unit.toSeconds(defaultDuration));
+            this.maxLeaseSeconds = (int) Math.max(1, Math.min(Integer.MAX_VALUE, unit.toSeconds(maxDuration)));
+            return this;
+        }
+
+        /**
+         * Build fake kingfisher server.
+         *
+         * @return the fake kingfisher server, not yet started
+         */
+        FakeKingfisherServer build() {
+            return new FakeKingfisherServer(this);
+        }
+    }
+}
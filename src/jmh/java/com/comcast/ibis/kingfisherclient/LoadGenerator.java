@@ -0,0 +1,180 @@
+package com.comcast.ibis.kingfisherclient;
+
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Load generator. Drives real {@link KingfisherClient} instances against a
+ * {@link FakeKingfisherServer} with a mix of searches, device calls and reserve/release cycles,
+ * then reports throughput and latency percentiles per rpc and per operation.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=com.comcast.ibis.kingfisherclient.LoadGenerator \
+ *     -Djmh.args="--clients 4 --workers 32 --duration 30 --latency 20 --jitter 10 --failure-rate 0.01"
+ * </pre>
+ *
+ * Each client has its own token, so reservations made by one client contend with the others.
+ */
+public final class LoadGenerator {
+    private static final String[] KEYS = {"UP", "DOWN", "LEFT", "RIGHT", "OK"};
+
+    private final Map<String, String> options;
+    private final ClientMetrics rpcs = new ClientMetrics();
+    private final ClientMetrics operations = new ClientMetrics();
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+    }
+
+    /**
+     * The entry point.
+     *
+     * @param args the options, as "--name value" pairs
+     * @throws Exception the exception
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("expected an option, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws Exception {
+        int clientCount = intOption("clients", 2);
+        int workers = intOption("workers", 16);
+        long durationMillis = TimeUnit.SECONDS.toMillis(intOption("duration", 10));
+
+        try (FakeKingfisherServer server = FakeKingfisherServer.newBuilder()
+                .setDevices(intOption("devices", 200))
+                .setLatency(intOption("latency", 5), intOption("jitter", 5), TimeUnit.MILLISECONDS)
+                .setSlowCalls(doubleOption("slow-rate", 0.01), intOption("slow", 500), TimeUnit.MILLISECONDS)
+                .setFailures(doubleOption("failure-rate", 0), Status.Code.UNAVAILABLE)
+                .setLeaseDuration(intOption("lease", 30), 3600, TimeUnit.SECONDS)
+                .setThreads(intOption("server-threads", 8))
+                .build()
+                .start()) {
+
+            List<KingfisherClient> clients = new ArrayList<>();
+            for (int i = 0; i < clientCount; i++) {
+                KingfisherClient client = KingfisherClient.newBuilder()
+                        .setHost(server.getTarget())
+                        .setAuthorityHost(server.getAuthorityHost())
+                        .setToken("load-" + i, KingfisherClient.KingfisherClientBuilder.TokenType.APIKEY)
+                        .setLeaseDuration(intOption("lease", 30), TimeUnit.SECONDS)
+                        .addMetricsListener((method, deviceId, status, latencyNanos, requestBytes, responseBytes) ->
+                                rpcs.method(method).record(status, latencyNanos, requestBytes, responseBytes))
+                        .build();
+                client.start();
+                clients.add(client);
+            }
+
+            long deadline = System.currentTimeMillis() + durationMillis;
+            // workers block on their calls, like test workflows; on Java 21+ they are virtual threads
+            long startedAt = System.nanoTime();
+            CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+            for (int i = 0; i < workers; i++) {
+                KingfisherClient client = clients.get(i % clients.size());
+                running[i] = CompletableFuture.runAsync(() -> {
+                    List<Device> devices = client.searchDevices(device -> true);
+                    while (System.currentTimeMillis() < deadline) {
+                        step(client, devices);
+                    }
+                }, client.getExecutor());
+            }
+            CompletableFuture.allOf(running).join();
+            double seconds = (System.nanoTime() - startedAt) / 1e9;
+
+            for (KingfisherClient client : clients) {
+                client.stop();
+            }
+
+            System.out.printf("%d clients, %d workers, %d devices, %.1fs%n",
+                    clientCount, workers, server.getInventory().size(), seconds);
+            report("rpc", rpcs.snapshot(), seconds);
+            report("operation", operations.snapshot(), seconds);
+            System.out.printf("server: calls=%d injectedFailures=%d lockConflicts=%d expiredLeases=%d%n",
+                    server.getCalls(), server.getInjectedFailures(), server.getLockConflicts(), server.getExpiredLeases());
+        }
+    }
+
+    /**
+     * One operation of the mix, timed end to end as the caller sees it.
+     */
+    private void step(KingfisherClient client, List<Device> devices) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Device device = devices.get(random.nextInt(devices.size()));
+        int roll = random.nextInt(100);
+        String operation;
+        Runnable body;
+        if (roll < 35) {
+            operation = "checkAlive";
+            body = device::checkAlive;
+        } else if (roll < 55) {
+            operation = "pressKey";
+            body = () -> device.pressKey(KEYS[random.nextInt(KEYS.length)]);
+        } else if (roll < 65) {
+            operation = "screenshot";
+            body = device::screenshot;
+        } else if (roll < 80) {
+            operation = "search";
+            String make = BenchmarkFixtures.MAKES[random.nextInt(BenchmarkFixtures.MAKES.length)];
+            body = () -> client.searchDevices(Search.make(make));
+        } else {
+            operation = "reserveCycle";
+            body = () -> {
+                client.reserve(device);
+                try {
+                    device.pressKey("OK");
+                } finally {
+                    client.release(device);
+                }
+            };
+        }
+
+        ClientMetrics.Recorder recorder = operations.method(operation);
+        long startedAt = System.nanoTime();
+        Status.Code status = Status.Code.OK;
+        try {
+            body.run();
+        } catch (Throwable e) {
+            status = Status.fromThrowable(e).getCode();
+        }
+        recorder.record(status, System.nanoTime() - startedAt, 0, 0);
+    }
+
+    private static void report(String title, MetricsSnapshot snapshot, double seconds) {
+        System.out.printf("%n%-22s %10s %9s %8s %9s %9s %9s %9s%n",
+                title, "calls", "calls/s", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        snapshot.getMethods().forEach((name, stats) -> System.out.printf("%-22s %10d %9.1f %8d %9.2f %9.2f %9.2f %9.2f%n",
+                name, stats.getCount(), stats.getCount() / seconds, stats.getErrors(),
+                millis(stats.getPercentile(50, TimeUnit.MICROSECONDS)),
+                millis(stats.getPercentile(90, TimeUnit.MICROSECONDS)),
+                millis(stats.getPercentile(99, TimeUnit.MICROSECONDS)),
+                millis(stats.getMax(TimeUnit.MICROSECONDS))));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return (value != null) ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        String value = options.get(name);
+        return (value != null) ? Double.parseDouble(value) : defaultValue;
+    }
+}
@@ -0,0 +1,99 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * The type Search benchmark. Composing and evaluating search predicates, by linear scan and
+ * through the inventory index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"1000", "10000"})
+    private int inventorySize;
+
+    private List<DeviceData> devices;
+    private DeviceIndex index;
+    private Predicate<DeviceData> selective;
+    private Predicate<DeviceData> broad;
+    private DeviceData device;
+
+    @Setup
+    public void setup() {
+        devices = BenchmarkFixtures.devices(inventorySize);
+        index = DeviceIndex.build(devices);
+        selective = Search.and(Search.make("Sony"), Search.label("env", "prod"), Search.rackName("rack-7"));
+        broad = Search.or(Search.make("Sony"), Search.make("LG"), Search.label("team", "team-3"));
+        device = devices.get(devices.size() / 2);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Predicate<DeviceData> compose() {
+        return Search.and(Search.make("Sony"), Search.label("env", "prod"), Search.rackName("rack-7"));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean evaluateOne() {
+        return selective.test(device);
+    }
+
+    @Benchmark
+    public void scanSelective(Blackhole blackhole) {
+        for (DeviceData candidate : devices) {
+            blackhole.consume(selective.test(candidate));
+        }
+    }
+
+    @Benchmark
+    public void scanBroad(Blackhole blackhole) {
+        for (DeviceData candidate : devices) {
+            blackhole.consume(broad.test(candidate));
+        }
+    }
+
+    @Benchmark
+    public List<DeviceData> indexSelective() {
+        return index.select(selective);
+    }
+
+    @Benchmark
+    public List<DeviceData> indexBroad() {
+        return index.select(broad);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Map<String, String> serverFilter() {
+        return SearchPredicate.serverFilter(selective);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public DeviceIndex buildIndex() {
+        return DeviceIndex.build(devices);
+    }
+}
@@ -0,0 +1,85 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+import com.comcast.ibis.kingfisher.DeviceMetadata;
+import com.comcast.ibis.kingfisher.KingfisherGrpc;
+import com.comcast.ibis.kingfisher.OwnerSpec;
+import com.comcast.ibis.kingfisherclient.common.Utils;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Utils benchmark. Turning inventory entries into {@link Device} handles, which builds
+ * every per-device request prototype, and resolving owners.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+
+    @Param({"100", "1000"})
+    private int inventorySize;
+
+    private ManagedChannel channel;
+    private KingfisherGrpc.KingfisherBlockingStub stub;
+    private List<DeviceData> devices;
+    private Map<String, String> secrets;
+    private DeviceMetadata ownedByUser;
+    private DeviceMetadata unowned;
+
+    @Setup
+    public void setup() {
+        // never called, the stub is only handed to the devices
+        channel = InProcessChannelBuilder.forName("utils-benchmark").build();
+        stub = KingfisherGrpc.newBlockingStub(channel);
+        devices = BenchmarkFixtures.devices(inventorySize);
+        secrets = new ConcurrentHashMap<>();
+        for (int i = 0; i < devices.size(); i += 4) {
+            secrets.put(devices.get(i).getReference().getDevice(), "secret-" + i);
+        }
+        ownedByUser = devices.get(0).getMetadata();
+        unowned = devices.get(1).getMetadata();
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.shutdownNow();
+    }
+
+    @Benchmark
+    public List<Device> deviceList() {
+        return Utils.deviceList(devices, stub, secrets);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public OwnerSpec ownerSpecUser() {
+        return Utils.getOwnerSpec(ownedByUser);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public OwnerSpec ownerSpecNone() {
+        return Utils.getOwnerSpec(unowned);
+    }
+}
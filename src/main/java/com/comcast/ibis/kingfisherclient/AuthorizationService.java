@@ -1,69 +1,170 @@
 package com.comcast.ibis.kingfisherclient;
 
-import com.comcast.ibis.kingfisherclient.common.Constants;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.Data;
-import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * The type Authorization service.
  */
 public class AuthorizationService {
-    private final CloseableHttpClient httpClient = HttpClients.createDefault();
+    private static final int MAX_CONNECTIONS = 16;
+
+    private final CloseableHttpClient httpClient;
     private ObjectMapper mapper;
     private String apiKey;
     private String host;
+    private final long userTtlNanos;
+    private final Object userLock = new Object();
+    private volatile CachedUser cachedUser;
+    private CompletableFuture<CurrentUser> pendingUser;
 
     /**
      * Instantiates a new Authorization service.
      *
-     * @param apiKey the api key
+     * @param apiKey        the api key
+     * @param host          the authority service url
+     * @param userTtlMillis how long the current user is cached
      */
 
-    AuthorizationService(String apiKey, String host) {
+    AuthorizationService(String apiKey, String host, long userTtlMillis) {
         this.mapper = new ObjectMapper();
         this.apiKey = apiKey;
         this.host = host;
+        this.userTtlNanos = TimeUnit.MILLISECONDS.toNanos(userTtlMillis);
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .build();
     }
 
     /**
-     * Gets current user org.
+     * Gets current user org. The user is cached for the configured time to live, and concurrent
+     * callers that find no cached user share a single request.
      *
      * @return the current user org
      * @throws IOException the io exception
      */
     public CurrentUser getCurrentUser() throws  IOException{
+        CachedUser cached = cachedUser;
+        if (cached != null && cached.isFresh()) {
+            return cached.user;
+        }
+
+        CompletableFuture<CurrentUser> request;
+        boolean owner = false;
+        synchronized (userLock) {
+            cached = cachedUser;
+            if (cached != null && cached.isFresh()) {
+                return cached.user;
+            }
+            if (pendingUser == null) {
+                pendingUser = new CompletableFuture<>();
+                owner = true;
+            }
+            request = pendingUser;
+        }
+
+        if (owner) {
+            try {
+                CurrentUser user = fetchCurrentUser();
+                cachedUser = new CachedUser(user, System.nanoTime() + userTtlNanos);
+                request.complete(user);
+            } catch (Throwable t) {
+                request.completeExceptionally(t);
+            } finally {
+                synchronized (userLock) {
+                    pendingUser = null;
+                }
+            }
+        }
+
+        try {
+            return request.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drop the cached current user; the next lookup asks the authority service again.
+     */
+    public void invalidateCurrentUser() {
+        cachedUser = null;
+    }
 
-        HttpGet request = new HttpGet(Constants.AUTHORITY_SERVICE + "/users/current");
+    /**
+     * Close the underlying http client and its pooled connections.
+     *
+     * @throws IOException the io exception
+     */
+    void close() throws IOException {
+        httpClient.close();
+    }
+
+    private CurrentUser fetchCurrentUser() throws IOException {
+
+        HttpGet request = new HttpGet(host + "/users/current");
         request.addHeader("Authorization", "apikey " + apiKey);
-        CloseableHttpResponse response = httpClient.execute(request);
-        HttpEntity entity = response.getEntity();
-        Header headers = entity.getContentType();
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            HttpEntity entity = response.getEntity();
+
+            if (entity == null) {
+                throw new Error("no response body found");
+            }
+
+            JsonNode jsonNode;
+            try (InputStream content = entity.getContent()) {
+                jsonNode = mapper.readTree(content);
+            }
 
-        if (entity == null) {
-            throw new Error("no response body found");
+            if(jsonNode.get("error") != null) {
+                throw new IllegalArgumentException(jsonNode.get("error").toString());
+            }
+
+            return this.mapper.treeToValue(jsonNode.get("result"), CurrentUser.class);
         }
+    }
 
-        JsonNode jsonNode = mapper.readTree(EntityUtils.toString(entity));
+    private static class CachedUser {
+        private final CurrentUser user;
+        private final long expiresAt;
 
-        if(jsonNode.get("error") != null) {
-            throw new IllegalArgumentException(jsonNode.get("error").toString());
+        private CachedUser(CurrentUser user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
         }
 
-        CurrentUser user = this.mapper.readValue(jsonNode.get("result").toString(), CurrentUser.class);
-        return user;
+        private boolean isFresh() {
+            return System.nanoTime() - expiresAt < 0;
+        }
     }
 
     /**
@@ -90,4 +191,4 @@ public class AuthorizationService {
         private String org;
         private String id;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package com.comcast.ibis.kingfisherclient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The type Batch exception. Thrown by operations on a list of devices when some of them failed;
+ * the outcome of every device is attached.
+ */
+public class BatchException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final List<BatchResult> results;
+
+    /**
+     * Instantiates a new Batch exception. The first failure becomes the cause.
+     *
+     * @param message the message
+     * @param results the outcome of each device, at least one of them a failure
+     */
+    BatchException(String message, List<BatchResult> results) {
+        super(message + ": " + failures(results).size() + " of " + results.size() + " devices failed",
+                failures(results).stream().map(BatchResult::getError).findFirst().orElse(null));
+        this.results = Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Gets results.
+     *
+     * @return the outcome of each device, in list order
+     */
+    public List<BatchResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Gets failures.
+     *
+     * @return the failed devices, in list order
+     */
+    public List<BatchResult> getFailures() {
+        return failures(results);
+    }
+
+    private static List<BatchResult> failures(List<BatchResult> results) {
+        return results.stream().filter(result -> !result.isSuccess()).collect(Collectors.toList());
+    }
+}
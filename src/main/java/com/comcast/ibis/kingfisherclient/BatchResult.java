@@ -0,0 +1,67 @@
+package com.comcast.ibis.kingfisherclient;
+
+/**
+ * The type Batch result. Outcome of a single device within a batch operation.
+ */
+public class BatchResult {
+    private final Device device;
+    private final Throwable error;
+
+    private BatchResult(Device device, Throwable error) {
+        this.device = device;
+        this.error = error;
+    }
+
+    /**
+     * Success batch result.
+     *
+     * @param device the device
+     * @return the batch result
+     */
+    static BatchResult success(Device device) {
+        return new BatchResult(device, null);
+    }
+
+    /**
+     * Failure batch result.
+     *
+     * @param device the device
+     * @param error  the error
+     * @return the batch result
+     */
+    static BatchResult failure(Device device, Throwable error) {
+        return new BatchResult(device, error);
+    }
+
+    /**
+     * Gets device.
+     *
+     * @return the device
+     */
+    public Device getDevice() {
+        return device;
+    }
+
+    /**
+     * Is success boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Gets error.
+     *
+     * @return the error, or null on success
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{device=" + device.deviceRef.getDevice() + (error == null ? ", success" : ", error=" + error) + "}";
+    }
+}
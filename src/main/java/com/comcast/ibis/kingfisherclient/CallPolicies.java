@@ -0,0 +1,168 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.KingfisherGrpc;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The type Call policies. The call policy of every Kingfisher method, rendered as the gRPC service
+ * config of the client's channels so that deadlines and retries are applied by the channel itself.
+ */
+class CallPolicies {
+    /**
+     * Methods that only read state and are safe to send more than once.
+     */
+    static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "GetOrgs", "GetDevices", "GetDevice", "QueryDevices", "CheckPairing", "CheckAlive",
+            "Screenshot", "GetRedirectorType", "QueryCloudCookies")));
+
+    private static final Set<String> METHODS = KingfisherGrpc.getServiceDescriptor().getMethods().stream()
+            .map(method -> method.getFullMethodName().substring(method.getFullMethodName().lastIndexOf('/') + 1))
+            .collect(Collectors.toSet());
+
+    private final CallPolicy defaultPolicy;
+    private final Map<String, CallPolicy> methodPolicies;
+
+    /**
+     * Instantiates a new Call policies.
+     *
+     * @param defaultPolicy  the policy of methods without their own
+     * @param methodPolicies the policies by bare method name
+     */
+    CallPolicies(CallPolicy defaultPolicy, Map<String, CallPolicy> methodPolicies) {
+        this.defaultPolicy = defaultPolicy;
+        this.methodPolicies = new LinkedHashMap<>(methodPolicies);
+    }
+
+    /**
+     * Default policy, a generous deadline and no retries.
+     *
+     * @return the call policy
+     */
+    static CallPolicy defaultPolicy() {
+        return CallPolicy.newBuilder()
+                .setDeadline(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Default read policy, a shorter deadline and retries while the server is unavailable.
+     *
+     * @return the call policy
+     */
+    static CallPolicy defaultReadPolicy() {
+        return CallPolicy.newBuilder()
+                .setDeadline(30, TimeUnit.SECONDS)
+                .setMaxAttempts(4)
+                .setBackoff(200, 5000, TimeUnit.MILLISECONDS, 2)
+                .setRetryableCodes(Status.Code.UNAVAILABLE)
+                .build();
+    }
+
+    /**
+     * Default read policies by method.
+     *
+     * @return the policies
+     */
+    static Map<String, CallPolicy> defaultMethodPolicies() {
+        Map<String, CallPolicy> policies = new LinkedHashMap<>();
+        CallPolicy read = defaultReadPolicy();
+        IDEMPOTENT_METHODS.forEach(method -> policies.put(method, read));
+        return policies;
+    }
+
+    /**
+     * Check a bare method name belongs to the Kingfisher service.
+     *
+     * @param method the method
+     */
+    static void checkMethod(String method) {
+        if (!METHODS.contains(method)) {
+            throw new IllegalArgumentException("unknown Kingfisher method " + method);
+        }
+    }
+
+    /**
+     * Gets policy.
+     *
+     * @param method the bare method name
+     * @return the policy that applies to the method
+     */
+    CallPolicy getPolicy(String method) {
+        return methodPolicies.getOrDefault(method, defaultPolicy);
+    }
+
+    /**
+     * Max attempts of any policy.
+     *
+     * @return the max attempts
+     */
+    int maxAttempts() {
+        int max = defaultPolicy.getMaxAttempts();
+        for (CallPolicy policy : methodPolicies.values()) {
+            max = Math.max(max, policy.getMaxAttempts());
+        }
+        return max;
+    }
+
+    /**
+     * Render the policies as a service config.
+     *
+     * @return the service config
+     */
+    Map<String, Object> toServiceConfig() {
+        List<Object> methodConfigs = new ArrayList<>();
+
+        Map<String, Object> service = new LinkedHashMap<>();
+        service.put("service", KingfisherGrpc.SERVICE_NAME);
+        methodConfigs.add(methodConfig(Collections.singletonList(service), defaultPolicy));
+
+        for (Map.Entry<String, CallPolicy> entry : methodPolicies.entrySet()) {
+            Map<String, Object> name = new LinkedHashMap<>();
+            name.put("service", KingfisherGrpc.SERVICE_NAME);
+            name.put("method", entry.getKey());
+            methodConfigs.add(methodConfig(Collections.singletonList(name), entry.getValue()));
+        }
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("methodConfig", methodConfigs);
+        return config;
+    }
+
+    private static Map<String, Object> methodConfig(List<Object> names, CallPolicy policy) {
+        Map<String, Object> methodConfig = new LinkedHashMap<>();
+        methodConfig.put("name", names);
+        if (policy.getDeadline(TimeUnit.NANOSECONDS) > 0) {
+            methodConfig.put("timeout", duration(policy.getDeadline(TimeUnit.NANOSECONDS)));
+        }
+        if (policy.isRetrying()) {
+            // the service config is parsed as JSON, so numbers must be doubles
+            Map<String, Object> retryPolicy = new LinkedHashMap<>();
+            retryPolicy.put("maxAttempts", (double) policy.getMaxAttempts());
+            retryPolicy.put("initialBackoff", duration(policy.getInitialBackoff(TimeUnit.NANOSECONDS)));
+            retryPolicy.put("maxBackoff", duration(policy.getMaxBackoff(TimeUnit.NANOSECONDS)));
+            retryPolicy.put("backoffMultiplier", policy.getBackoffMultiplier());
+            Stream<Status.Code> codes = policy.getRetryableCodes().stream();
+            retryPolicy.put("retryableStatusCodes", codes.map(Status.Code::name).collect(Collectors.toList()));
+            methodConfig.put("retryPolicy", retryPolicy);
+        }
+        return methodConfig;
+    }
+
+    private static String duration(long nanos) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        long fraction = nanos - TimeUnit.SECONDS.toNanos(seconds);
+        return String.format("%d.%09ds", seconds, fraction);
+    }
+}
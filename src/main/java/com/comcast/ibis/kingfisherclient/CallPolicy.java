@@ -0,0 +1,192 @@
+package com.comcast.ibis.kingfisherclient;
+
+import io.grpc.Status;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Call policy. Deadline and retry behaviour of an RPC method. Retries back off
+ * exponentially; each wait is drawn at random between zero and the current backoff, so clients
+ * that failed together do not retry together.
+ */
+public class CallPolicy {
+    private final long deadlineNanos;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double backoffMultiplier;
+    private final Set<Status.Code> retryableCodes;
+
+    private CallPolicy(CallPolicyBuilder builder) {
+        this.deadlineNanos = builder.deadlineNanos;
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffNanos = builder.initialBackoffNanos;
+        this.maxBackoffNanos = builder.maxBackoffNanos;
+        this.backoffMultiplier = builder.backoffMultiplier;
+        this.retryableCodes = Collections.unmodifiableSet(builder.retryableCodes.isEmpty()
+                ? EnumSet.noneOf(Status.Code.class)
+                : EnumSet.copyOf(builder.retryableCodes));
+    }
+
+    /**
+     * New builder call policy builder.
+     *
+     * @return the call policy builder
+     */
+    public static CallPolicyBuilder newBuilder() { return new CallPolicyBuilder(); }
+
+    /**
+     * Gets deadline.
+     *
+     * @param unit the unit
+     * @return the deadline covering every attempt of a call, 0 for none
+     */
+    public long getDeadline(TimeUnit unit) {
+        return unit.convert(deadlineNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets max attempts.
+     *
+     * @return the max attempts, including the first
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Gets initial backoff.
+     *
+     * @param unit the unit
+     * @return the initial backoff
+     */
+    public long getInitialBackoff(TimeUnit unit) {
+        return unit.convert(initialBackoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets max backoff.
+     *
+     * @param unit the unit
+     * @return the max backoff
+     */
+    public long getMaxBackoff(TimeUnit unit) {
+        return unit.convert(maxBackoffNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets backoff multiplier.
+     *
+     * @return the backoff multiplier
+     */
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /**
+     * Gets retryable codes.
+     *
+     * @return the status codes that are retried
+     */
+    public Set<Status.Code> getRetryableCodes() {
+        return retryableCodes;
+    }
+
+    /**
+     * Is retrying boolean.
+     *
+     * @return whether failed calls are retried at all
+     */
+    public boolean isRetrying() {
+        return maxAttempts > 1 && !retryableCodes.isEmpty();
+    }
+
+    /**
+     * The type Call policy builder.
+     */
+    public static class CallPolicyBuilder {
+        private long deadlineNanos;
+        private int maxAttempts = 1;
+        private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(200);
+        private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(5);
+        private double backoffMultiplier = 2;
+        private Set<Status.Code> retryableCodes = EnumSet.of(Status.Code.UNAVAILABLE);
+
+        /**
+         * Instantiates a new Call policy builder.
+         */
+        public CallPolicyBuilder() { }
+
+        /**
+         * Sets deadline.
+         *
+         * @param deadline the deadline covering every attempt of a call, 0 for none
+         * @param unit     the unit
+         * @return the deadline
+         */
+        public CallPolicyBuilder setDeadline(long deadline, TimeUnit unit) {
+            if (deadline < 0) {
+                throw new IllegalArgumentException("deadline must not be negative");
+            }
+            this.deadlineNanos = unit.toNanos(deadline);
+            return this;
+        }
+
+        /**
+         * Sets max attempts.
+         *
+         * @param maxAttempts the max attempts including the first, 1 disables retries
+         * @return the max attempts
+         */
+        public CallPolicyBuilder setMaxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("max attempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets backoff.
+         *
+         * @param initialBackoff the backoff before the first retry
+         * @param maxBackoff     the ceiling the backoff grows to
+         * @param unit           the unit
+         * @param multiplier     the growth of the backoff after each retry
+         * @return the backoff
+         */
+        public CallPolicyBuilder setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit, double multiplier) {
+            if (initialBackoff <= 0 || maxBackoff < initialBackoff || !(multiplier >= 1)) {
+                throw new IllegalArgumentException("backoff must be positive, not exceed its max and not shrink");
+            }
+            this.initialBackoffNanos = unit.toNanos(initialBackoff);
+            this.maxBackoffNanos = unit.toNanos(maxBackoff);
+            this.backoffMultiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Sets retryable codes.
+         *
+         * @param codes the status codes that are retried
+         * @return the retryable codes
+         */
+        public CallPolicyBuilder setRetryableCodes(Status.Code... codes) {
+            this.retryableCodes = codes.length == 0 ? EnumSet.noneOf(Status.Code.class) : EnumSet.copyOf(Arrays.asList(codes));
+            return this;
+        }
+
+        /**
+         * Build call policy.
+         *
+         * @return the call policy
+         */
+        public CallPolicy build() {
+            return new CallPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.comcast.ibis.kingfisherclient;
+
+import io.grpc.Status;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Call stats. A point in time view of the calls of one method or one device.
+ */
+public class CallStats {
+    private final long count;
+    private final long inFlight;
+    private final Map<Status.Code, Long> statusCounts;
+    private final long requestBytes;
+    private final long responseBytes;
+    private final long[] histogram;
+
+    /**
+     * Instantiates a new Call stats.
+     *
+     * @param inFlight      the calls in flight
+     * @param statusCounts  the completed calls by status
+     * @param requestBytes  the request bytes
+     * @param responseBytes the response bytes
+     * @param histogram     the latency histogram counts
+     */
+    CallStats(long inFlight, Map<Status.Code, Long> statusCounts, long requestBytes, long responseBytes, long[] histogram) {
+        long total = 0;
+        for (long bucket : histogram) {
+            total += bucket;
+        }
+        this.count = total;
+        this.inFlight = inFlight;
+        this.statusCounts = Collections.unmodifiableMap(new EnumMap<>(statusCounts));
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Gets count.
+     *
+     * @return the completed calls
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets errors.
+     *
+     * @return the completed calls that did not end OK
+     */
+    public long getErrors() {
+        return count - statusCounts.getOrDefault(Status.Code.OK, 0L);
+    }
+
+    /**
+     * Gets in flight.
+     *
+     * @return the calls started but not yet completed
+     */
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets status counts.
+     *
+     * @return the completed calls by status code
+     */
+    public Map<Status.Code, Long> getStatusCounts() {
+        return statusCounts;
+    }
+
+    /**
+     * Gets request bytes.
+     *
+     * @return the serialized size of all requests sent
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * Gets response bytes.
+     *
+     * @return the serialized size of all responses received
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * Gets a latency percentile.
+     *
+     * @param percentile the percentile, e.g. 99
+     * @param unit       the unit
+     * @return the latency at or below which the percentile of calls completed, 0 if there were none
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return unit.convert(LatencyHistogram.upperBound(i), TimeUnit.MICROSECONDS);
+            }
+        }
+        return getMax(unit);
+    }
+
+    /**
+     * Gets mean latency.
+     *
+     * @param unit the unit
+     * @return the mean latency, 0 if there were no calls
+     */
+    public double getMean(TimeUnit unit) {
+        if (count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                sum += histogram[i] * (LatencyHistogram.lowerBound(i) + LatencyHistogram.upperBound(i)) / 2.0;
+            }
+        }
+        return sum / count * TimeUnit.MICROSECONDS.toNanos(1) / unit.toNanos(1);
+    }
+
+    /**
+     * Gets max latency.
+     *
+     * @param unit the unit
+     * @return the max latency, 0 if there were no calls
+     */
+    public long getMax(TimeUnit unit) {
+        for (int i = histogram.length - 1; i >= 0; i--) {
+            if (histogram[i] > 0) {
+                return unit.convert(LatencyHistogram.upperBound(i), TimeUnit.MICROSECONDS);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CallStats{count=" + count + ", errors=" + getErrors() + ", inFlight=" + inFlight
+                + ", p50Millis=" + getPercentile(50, TimeUnit.MILLISECONDS)
+                + ", p99Millis=" + getPercentile(99, TimeUnit.MILLISECONDS)
+                + ", maxMillis=" + getMax(TimeUnit.MILLISECONDS) + "}";
+    }
+}
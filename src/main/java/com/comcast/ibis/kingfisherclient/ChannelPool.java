@@ -0,0 +1,191 @@
+package com.comcast.ibis.kingfisherclient;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The type Channel pool. Spreads calls over several channels, each with its own HTTP/2
+ * connection, so concurrent calls are not bounded by the streams and flow control window of a
+ * single connection.
+ */
+class ChannelPool extends Channel {
+    /**
+     * Calls carrying the same affinity value always use the same channel. Concurrent calls on a
+     * channel are separate streams, so this does not order them.
+     */
+    static final CallOptions.Key<Object> AFFINITY = CallOptions.Key.create("kingfisher-channel-affinity");
+
+    private final List<ManagedChannel> channels;
+    private final TransportOptions.ChannelSelection selection;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicIntegerArray outstanding;
+    private final EventLoopGroup eventLoopGroup;
+
+    private ChannelPool(List<ManagedChannel> channels, TransportOptions.ChannelSelection selection, EventLoopGroup eventLoopGroup) {
+        this.channels = Collections.unmodifiableList(channels);
+        this.selection = selection;
+        this.outstanding = new AtomicIntegerArray(channels.size());
+        this.eventLoopGroup = eventLoopGroup;
+    }
+
+    /**
+     * Open the channels of a pool.
+     *
+     * @param target   the target
+     * @param options  the options
+     * @param policies the call policies
+     * @param executor the executor calls complete on, or null for the grpc default
+     * @return the channel pool
+     */
+    static ChannelPool open(String target, TransportOptions options, CallPolicies policies, Executor executor) {
+        boolean plaintext = options.getSecurity() == TransportOptions.Security.PLAINTEXT
+                || (options.getSecurity() == TransportOptions.Security.AUTO && target.contains("localhost"));
+        EventLoopGroup eventLoopGroup = (options.isNativeTransport() && Epoll.isAvailable())
+                // daemon threads like grpc's own event loops, so an unstopped client does not keep the jvm alive
+                ? new EpollEventLoopGroup(0, new DefaultThreadFactory("kingfisher-epoll", true))
+                : null;
+
+        List<ManagedChannel> channels = new ArrayList<>();
+        for (int i = 0; i < options.getChannelCount(); i++) {
+            NettyChannelBuilder builder = NettyChannelBuilder.forTarget(target);
+            if (plaintext) {
+                builder.usePlaintext();
+            } else {
+                builder.useTransportSecurity();
+            }
+            if (eventLoopGroup != null) {
+                builder.eventLoopGroup(eventLoopGroup).channelType(EpollSocketChannel.class);
+            }
+            if (options.getKeepAliveTimeMillis() > 0) {
+                builder.keepAliveTime(options.getKeepAliveTimeMillis(), TimeUnit.MILLISECONDS)
+                        .keepAliveWithoutCalls(options.isKeepAliveWithoutCalls());
+                if (options.getKeepAliveTimeoutMillis() > 0) {
+                    builder.keepAliveTimeout(options.getKeepAliveTimeoutMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+            if (options.getFlowControlWindow() > 0) {
+                builder.flowControlWindow(options.getFlowControlWindow());
+            }
+            if (options.getMaxInboundMessageSize() > 0) {
+                builder.maxInboundMessageSize(options.getMaxInboundMessageSize());
+            }
+            if (executor != null) {
+                builder.executor(executor);
+            }
+            builder.defaultServiceConfig(policies.toServiceConfig())
+                    .maxRetryAttempts(Math.max(1, policies.maxAttempts()))
+                    .enableRetry();
+            channels.add(builder.build());
+        }
+        return new ChannelPool(channels, options.getChannelSelection(), eventLoopGroup);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+        if (channels.size() == 1) {
+            return channels.get(0).newCall(methodDescriptor, callOptions);
+        }
+        Object affinity = callOptions.getOption(AFFINITY);
+        if (affinity != null) {
+            int index = Math.floorMod(affinity.hashCode(), channels.size());
+            return wrap(channels.get(index).newCall(methodDescriptor, callOptions), index);
+        }
+        if (selection == TransportOptions.ChannelSelection.ROUND_ROBIN) {
+            int index = Math.floorMod(next.getAndIncrement(), channels.size());
+            return channels.get(index).newCall(methodDescriptor, callOptions);
+        }
+        int index = leastOutstanding();
+        return new CountingCall<>(channels.get(index).newCall(methodDescriptor, callOptions), index);
+    }
+
+    private <ReqT, RespT> ClientCall<ReqT, RespT> wrap(ClientCall<ReqT, RespT> call, int index) {
+        // keep the outstanding counts accurate for calls routed by affinity
+        return (selection == TransportOptions.ChannelSelection.LEAST_OUTSTANDING) ? new CountingCall<>(call, index) : call;
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).authority();
+    }
+
+    /**
+     * Shutdown every channel and wait for them to terminate.
+     *
+     * @param timeout the timeout
+     * @param unit    the unit
+     * @throws InterruptedException the interrupted exception
+     */
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        channels.forEach(ManagedChannel::shutdown);
+        for (ManagedChannel channel : channels) {
+            channel.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+        if (eventLoopGroup != null) {
+            eventLoopGroup.shutdownGracefully(0, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private int leastOutstanding() {
+        // start from a rotating offset so ties do not all land on the first channel
+        int start = Math.floorMod(next.getAndIncrement(), channels.size());
+        int best = start;
+        int bestCount = outstanding.get(start);
+        for (int i = 1; i < channels.size() && bestCount > 0; i++) {
+            int index = (start + i) % channels.size();
+            int count = outstanding.get(index);
+            if (count < bestCount) {
+                best = index;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private final class CountingCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+        private final int index;
+
+        private CountingCall(ClientCall<ReqT, RespT> delegate, int index) {
+            super(delegate);
+            this.index = index;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            outstanding.incrementAndGet(index);
+            try {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        outstanding.decrementAndGet(index);
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            } catch (RuntimeException e) {
+                outstanding.decrementAndGet(index);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.comcast.ibis.kingfisherclient;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The type Client executors. The executors a client creates when none are supplied. On Java 21
+ * and later callbacks and workflows run on virtual threads, so blocking device calls need no
+ * sized pool; on older runtimes they run on a cached pool of daemon threads.
+ */
+final class ClientExecutors {
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+
+    private ClientExecutors() { }
+
+    /**
+     * Whether the runtime has virtual threads.
+     *
+     * @return true on Java 21 and later
+     */
+    static boolean isVirtualThreadsAvailable() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * New default executor.
+     *
+     * @return a virtual thread per task executor when available, a cached daemon thread pool otherwise
+     */
+    static ExecutorService newExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                // fall through to platform threads
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "kingfisher-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * New default scheduler. Scheduled work only renews leases and sends hedges, none of it
+     * blocks, so one platform thread is enough.
+     *
+     * @return the scheduled executor service
+     */
+    static ScheduledExecutorService newScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kingfisher-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static Method virtualThreadExecutorFactory() {
+        // looked up reflectively so the library still compiles for and runs on Java 8
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import io.grpc.Status;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The type Client metrics. Latency, status, payload and concurrency of every call a client makes,
+ * by method and by device. Read it with {@link #snapshot()} or receive each call through a
+ * {@link MetricsListener}.
+ */
+public class ClientMetrics {
+    // devices beyond this many are still counted per method, just not broken out
+    private static final int MAX_DEVICES = 4096;
+    private static final Status.Code[] CODES = Status.Code.values();
+
+    private final Map<String, Recorder> methods = new ConcurrentHashMap<>();
+    private final Map<String, Recorder> devices = new ConcurrentHashMap<>();
+    private final Map<String, Optional<Descriptors.FieldDescriptor>> deviceFields = new ConcurrentHashMap<>();
+    private final List<MetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Instantiates a new Client metrics.
+     */
+    ClientMetrics() { }
+
+    /**
+     * Add listener.
+     *
+     * @param listener the listener
+     */
+    public void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Snapshot of the metrics so far.
+     *
+     * @return the metrics snapshot
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, CallStats> methodStats = new HashMap<>();
+        methods.forEach((name, recorder) -> methodStats.put(name, recorder.stats()));
+        Map<String, CallStats> deviceStats = new HashMap<>();
+        devices.forEach((id, recorder) -> deviceStats.put(id, recorder.stats()));
+        return new MetricsSnapshot(System.currentTimeMillis(), methodStats, deviceStats);
+    }
+
+    /**
+     * Gets the recorder of a method.
+     *
+     * @param method the method
+     * @return the recorder
+     */
+    Recorder method(String method) {
+        return methods.computeIfAbsent(method, key -> new Recorder());
+    }
+
+    /**
+     * Gets the recorder of a device.
+     *
+     * @param deviceId the device id
+     * @return the recorder, or null once too many devices are tracked
+     */
+    Recorder device(String deviceId) {
+        Recorder recorder = devices.get(deviceId);
+        if (recorder == null && devices.size() < MAX_DEVICES) {
+            recorder = devices.computeIfAbsent(deviceId, key -> new Recorder());
+        }
+        return recorder;
+    }
+
+    /**
+     * The device a request addresses, read from its device_id field.
+     *
+     * @param method  the method
+     * @param request the request
+     * @return the device id, or null
+     */
+    String deviceId(String method, Object request) {
+        if (!(request instanceof Message)) {
+            return null;
+        }
+        Message message = (Message) request;
+        Optional<Descriptors.FieldDescriptor> field = deviceFields.computeIfAbsent(method, key ->
+                Optional.ofNullable(message.getDescriptorForType().findFieldByName("device_id"))
+                        .filter(descriptor -> descriptor.getJavaType() == Descriptors.FieldDescriptor.JavaType.STRING));
+        if (!field.isPresent()) {
+            return null;
+        }
+        String deviceId = (String) message.getField(field.get());
+        return deviceId.isEmpty() ? null : deviceId;
+    }
+
+    /**
+     * Publish a completed call to the listeners.
+     *
+     * @param method        the method
+     * @param deviceId      the device id
+     * @param status        the status
+     * @param latencyNanos  the latency nanos
+     * @param requestBytes  the request bytes
+     * @param responseBytes the response bytes
+     */
+    void publish(String method, String deviceId, Status.Code status, long latencyNanos, long requestBytes, long responseBytes) {
+        for (MetricsListener listener : listeners) {
+            try {
+                listener.onCallCompleted(method, deviceId, status, latencyNanos, requestBytes, responseBytes);
+            } catch (RuntimeException e) {
+                // a broken listener must not fail the call
+            }
+        }
+    }
+
+    /**
+     * The type Recorder. Counters of one method or device.
+     */
+    static final class Recorder {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLongArray statusCounts = new AtomicLongArray(CODES.length);
+        private final AtomicLong inFlight = new AtomicLong();
+        private final LongAdder requestBytes = new LongAdder();
+        private final LongAdder responseBytes = new LongAdder();
+
+        /**
+         * Call started.
+         */
+        void started() {
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * Call finished, whether or not it completed.
+         */
+        void finished() {
+            inFlight.decrementAndGet();
+        }
+
+        /**
+         * Record a completed call.
+         *
+         * @param status        the status
+         * @param latencyNanos  the latency nanos
+         * @param requestBytes  the request bytes
+         * @param responseBytes the response bytes
+         */
+        void record(Status.Code status, long latencyNanos, long requestBytes, long responseBytes) {
+            latency.record(latencyNanos);
+            statusCounts.incrementAndGet(status.ordinal());
+            this.requestBytes.add(requestBytes);
+            this.responseBytes.add(responseBytes);
+        }
+
+        private CallStats stats() {
+            Map<Status.Code, Long> counts = new EnumMap<>(Status.Code.class);
+            for (Status.Code code : CODES) {
+                long count = statusCounts.get(code.ordinal());
+                if (count > 0) {
+                    counts.put(code, count);
+                }
+            }
+            return new CallStats(inFlight.get(), counts, requestBytes.sum(), responseBytes.sum(), latency.counts());
+        }
+    }
+}
@@ -6,8 +6,23 @@ import com.comcast.ibis.kingfisherclient.common.Utils;
 import com.google.protobuf.ByteString;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.lang.Error;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -33,10 +48,20 @@ public class Device {
 
     private KingfisherGrpc.KingfisherBlockingStub stub;
 
+    private KingfisherGrpc.KingfisherFutureStub futureStub;
+
     private Map<String, String> secretManager;
 
     private OwnerSpec ownerSpec;
 
+    private final LockDeviceRequest lockTemplate;
+    private final UnlockDeviceRequest unlockTemplate;
+    private final RedirectLinkRequest redirectTemplate;
+    private final ScreenshotRequest screenshotRequest;
+    private final CheckAliveRequest checkAliveRequest;
+    private final GetRedirectorRequest redirectorTypeRequest;
+    private volatile Templates templates;
+
     /**
      * Instantiates a new Device.
      *
@@ -53,59 +78,97 @@ public class Device {
         this.deviceMetadata = deviceMetadata;
         this.deviceRef = deviceRef;
         this.stub = stub;
+        // shares the intercepted channel of the blocking stub
+        this.futureStub = KingfisherGrpc.newFutureStub(stub.getChannel());
         this.secretManager = secretManager;
         this.ownerSpec = Utils.getOwnerSpec(this.deviceMetadata);
+
+        // requests that only carry the device identity are built once
+        LockDeviceRequest.Builder lock = LockDeviceRequest.newBuilder()
+                .setDeviceId(deviceRef.getDevice())
+                .setOrg(deviceRef.getOrg());
+        UnlockDeviceRequest.Builder unlock = UnlockDeviceRequest.newBuilder()
+                .setDeviceId(deviceRef.getDevice())
+                .setOrg(deviceRef.getOrg());
+        RedirectLinkRequest.Builder redirect = RedirectLinkRequest.newBuilder()
+                .setOrg(deviceRef.getOrg())
+                .setDeviceId(deviceRef.getDevice());
+        ScreenshotRequest.Builder screenshot = ScreenshotRequest.newBuilder()
+                .setDeviceId(deviceRef.getDevice())
+                .setOrg(deviceRef.getOrg());
+        CheckAliveRequest.Builder checkAlive = CheckAliveRequest.newBuilder()
+                .setDeviceId(deviceRef.getDevice())
+                .setOrg(deviceRef.getOrg());
+        GetRedirectorRequest.Builder redirectorType = GetRedirectorRequest.newBuilder()
+                .setOrg(deviceRef.getOrg())
+                .setDeviceId(deviceRef.getDevice());
+        if(ownerSpec != null) {
+            lock.setOwner(ownerSpec);
+            unlock.setOwner(ownerSpec);
+            redirect.setOwner(ownerSpec);
+            screenshot.setOwner(ownerSpec);
+            checkAlive.setOwner(ownerSpec);
+            redirectorType.setOwner(ownerSpec);
+        }
+        this.lockTemplate = lock.build();
+        this.unlockTemplate = unlock.build();
+        this.redirectTemplate = redirect.build();
+        this.screenshotRequest = screenshot.build();
+        this.checkAliveRequest = checkAlive.build();
+        this.redirectorTypeRequest = redirectorType.build();
     }
 
     /**
-     * Lock string.
+     * Lock device reservation.
      *
-     * @return the string
+     * @param durationSeconds the requested lease duration, or 0 for the server default
+     * @return the device reservation
      */
-    String lock() {
+    DeviceReservation lock(int durationSeconds) {
         LockDeviceResponse res;
         try {
-            LockDeviceRequest.Builder req = LockDeviceRequest.newBuilder()
-                    .setDeviceId(deviceRef.getDevice())
-                    .setOrg(deviceRef.getOrg());
-            if(ownerSpec != null) {
-                req.setOwner(ownerSpec);
-            }
-            res = this.stub.lockDevice(req.build());
+            res = this.stub.lockDevice(lockRequest(null, durationSeconds));
         } catch (Exception e) {
-            throw new Error("unable to lock device");
+            throw new Error("unable to lock device", e);
         }
 
-        return res.getResult().getReservation().getReservationSecret();
+        return res.getResult().getReservation();
     }
 
 
     /**
-     * Lock string.
+     * Lock device reservation.
      *
-     * @param secret the secret
-     * @return the string
+     * @param secret          the secret
+     * @param durationSeconds the requested lease duration, or 0 for the server default
+     * @return the device reservation
      */
-    String lock(String secret) {
+    DeviceReservation lock(String secret, int durationSeconds) {
         LockDeviceResponse res;
         if ((StringUtils.stripToNull(secret) == null)) {
             throw new IllegalArgumentException("reservation secret is not present");
         }
         try {
-            LockDeviceRequest.Builder req = LockDeviceRequest.newBuilder()
-                    .setDeviceId(deviceRef.getDevice())
-                    .setOrg(deviceRef.getOrg())
-                    .setReservationSecret(secret);
-            if(ownerSpec != null) {
-                req.setOwner(ownerSpec);
-            }
-            res = this.stub.lockDevice(req.build());
-            return res.getResult().getReservation().getReservationSecret();
+            res = this.stub.lockDevice(lockRequest(secret, durationSeconds));
+            return res.getResult().getReservation();
         } catch (Exception e) {
-            throw new Error("unable to lock device");
+            throw new Error("unable to lock device", e);
         }
     }
 
+    /**
+     * Lock the device asynchronously. A null secret requests a new reservation.
+     *
+     * @param secret          the secret
+     * @param durationSeconds the requested lease duration, or 0 for the server default
+     * @param executor        the executor
+     * @return the device reservation future
+     */
+    CompletableFuture<DeviceReservation> lockAsync(String secret, int durationSeconds, Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.lockDevice(lockRequest(secret, durationSeconds)),
+                res -> res.getResult().getReservation(), executor);
+    }
+
     /**
      * Unlock.
      *
@@ -117,14 +180,49 @@ public class Device {
             throw new IllegalArgumentException("reservation secret must be provided");
         }
 
-        UnlockDeviceRequest.Builder req = UnlockDeviceRequest.newBuilder()
+        UnlockDeviceResponse res = this.stub.unlockDevice(unlockRequest(secret));
+    }
+
+    /**
+     * Unlock the device asynchronously through BeaconUnlockDevice, which carries the authorization
+     * and the secret in the request body. It is the fallback for when UnlockDevice cannot be used.
+     *
+     * @param secret        the secret
+     * @param authorization the authorization, e.g. "apikey ..."
+     * @param executor      the executor
+     * @return the beacon unlock device response future
+     */
+    CompletableFuture<BeaconUnlockDeviceResponse> beaconUnlockAsync(String secret, String authorization, Executor executor) {
+
+        if (secret == null) {
+            throw new IllegalArgumentException("reservation secret must be provided");
+        }
+
+        BeaconUnlockDeviceRequest.Builder req = BeaconUnlockDeviceRequest.newBuilder()
+                .setOrg(deviceRef.getOrg())
                 .setDeviceId(deviceRef.getDevice())
-                .setReservationSecret(secret)
-                .setOrg(deviceRef.getOrg());
-        if(ownerSpec != null) {
+                .setAuthorization(authorization)
+                .setRequest(BeaconRequest.newBuilder().setReservationSecret(secret));
+        if (ownerSpec != null) {
             req.setOwner(ownerSpec);
         }
-        UnlockDeviceResponse res = this.stub.unlockDevice(req.build());
+        return Utils.toCompletableFuture(this.futureStub.beaconUnlockDevice(req.build()), executor);
+    }
+
+    /**
+     * Unlock the device asynchronously.
+     *
+     * @param secret   the secret
+     * @param executor the executor
+     * @return the unlock device response future
+     */
+    CompletableFuture<UnlockDeviceResponse> unlockAsync(String secret, Executor executor) {
+
+        if (secret == null) {
+            throw new IllegalArgumentException("reservation secret must be provided");
+        }
+
+        return Utils.toCompletableFuture(this.futureStub.unlockDevice(unlockRequest(secret)), executor);
     }
 
     /**
@@ -133,15 +231,18 @@ public class Device {
      * @param appConfig the app config
      */
     public void launchApp(AppConfig appConfig) {
-        LaunchAppRequest.Builder req = LaunchAppRequest.newBuilder()
-                .setDeviceId(deviceRef.getDevice())
-                .setAppConfig(appConfig)
-                .setReservationSecret(secretManager.get(deviceRef.getDevice()))
-                .setOrg(deviceRef.getOrg());
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
-        }
-        LaunchAppResponse res = this.stub.launchApp(req.build());
+        LaunchAppResponse res = this.stub.launchApp(launchAppRequest(appConfig).build());
+    }
+
+    /**
+     * Launch app asynchronously.
+     *
+     * @param appConfig the app config
+     * @param executor  the executor the future completes on
+     * @return the launch app response future
+     */
+    public CompletableFuture<LaunchAppResponse> launchAppAsync(AppConfig appConfig, Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.launchApp(launchAppRequest(appConfig).build()), executor);
     }
 
     /**
@@ -152,24 +253,23 @@ public class Device {
      * @return the string
      */
     public String launchApp(AppConfig appConfig,DeeplinkParams deepLinkParams) {
-        LaunchAppRequest.Builder req = LaunchAppRequest.newBuilder()
-                .setDeviceId(deviceRef.getDevice())
-                .setAppConfig(appConfig)
-                .setReservationSecret(secretManager.get(deviceRef.getDevice()))
-                .setOrg(deviceRef.getOrg())
-                .setNotStackable(deepLinkParams.isNotStackable())
-                .setDisableVoiceOut((deepLinkParams.isDisableVoiceOut()))
-                .setDryRun(deepLinkParams.isDryRun())
-                .setVoiceGuidanceMode(deepLinkParams.getVoiceGuidanceMode())
-                .putAllAdditionalParams(deepLinkParams.getAdditionalParams())
-                .setEnableScreensaver(deepLinkParams.isEnableScreensaver());
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
-        }
-        LaunchAppResponse res = this.stub.launchApp(req.build());
+        LaunchAppResponse res = this.stub.launchApp(launchAppRequest(appConfig, deepLinkParams));
         return res.getResult().getDeeplink();
     }
 
+    /**
+     * Launch app asynchronously.
+     *
+     * @param appConfig      the app config
+     * @param deepLinkParams the deep link params
+     * @param executor       the executor the future completes on
+     * @return the deeplink future
+     */
+    public CompletableFuture<String> launchAppAsync(AppConfig appConfig, DeeplinkParams deepLinkParams, Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.launchApp(launchAppRequest(appConfig, deepLinkParams)),
+                res -> res.getResult().getDeeplink(), executor);
+    }
+
     /**
      * Deeplink string.
      *
@@ -177,43 +277,146 @@ public class Device {
      * @return the string
      */
     public String deeplink(String deeplink) {
-
-        if (StringUtils.stripToNull(deeplink) == null) {
-            throw new IllegalArgumentException("deeplink  must be provided");
-        }
-
-        DeeplinkRequest.Builder req = DeeplinkRequest.newBuilder()
-                .setDeviceId(deviceRef.getDevice())
-                .setReservationSecret(secretManager.get(deviceRef.getDevice()))
-                .setDeeplink(deeplink)
-                .setOrg(deviceRef.getOrg());
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
-        }
-        DeeplinkResponse res = this.stub.deeplink(req.build());
+        DeeplinkResponse res = this.stub.deeplink(deeplinkRequest(deeplink));
          return res.getResult().getDeeplink();
     }
 
+    /**
+     * Deeplink asynchronously.
+     *
+     * @param deeplink the deeplink
+     * @param executor the executor the future completes on
+     * @return the deeplink future
+     */
+    public CompletableFuture<String> deeplinkAsync(String deeplink, Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.deeplink(deeplinkRequest(deeplink)),
+                res -> res.getResult().getDeeplink(), executor);
+    }
+
     /**
      * Press key.
      *
      * @param key the key
      */
     public void pressKey(String key) {
+        PressKeyResponse res = this.stub.pressKey(pressKeyRequest(key));
+    }
 
-        if (StringUtils.stripToNull(key) == null) {
-            throw new IllegalArgumentException("key  must be provided");
-        }
+    /**
+     * Press key asynchronously.
+     *
+     * @param key      the key
+     * @param executor the executor the future completes on
+     * @return the press key response future
+     */
+    public CompletableFuture<PressKeyResponse> pressKeyAsync(String key, Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.pressKey(pressKeyRequest(key)), executor);
+    }
 
-        PressKeyRequest.Builder req = PressKeyRequest.newBuilder()
-                .setDeviceId(deviceRef.getDevice())
-                .setReservationSecret(secretManager.get(deviceRef.getDevice()))
-                .setKey(key)
-                .setOrg(deviceRef.getOrg());
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
+    /**
+     * Press keys in order, back to back.
+     *
+     * @param keys the keys
+     * @return the result of each key, in order
+     */
+    public List<KeyPressResult> pressKeys(String... keys) {
+        return pressKeys(Arrays.asList(keys));
+    }
+
+    /**
+     * Press keys in order, back to back.
+     *
+     * @param keys the keys
+     * @return the result of each key, in order
+     */
+    public List<KeyPressResult> pressKeys(List<String> keys) {
+        return pressKeys(KeySequence.of(keys));
+    }
+
+    /**
+     * Press a key sequence. With the default in flight limit of one, each key is sent once the
+     * previous key was acknowledged and its delay has passed since then, so the device receives the
+     * keys in order and the delay is the time the device gets between them. With a higher limit the
+     * delay runs from when the previous key was sent and keys may arrive out of order.
+     *
+     * @param sequence the sequence
+     * @return the result of each key, in order
+     */
+    public List<KeyPressResult> pressKeys(KeySequence sequence) {
+        List<String> keys = sequence.getKeys();
+        KeyPressResult[] results = new KeyPressResult[keys.size()];
+        CompletableFuture<?>[] pending = new CompletableFuture<?>[keys.size()];
+        Semaphore inFlight = new Semaphore(sequence.getMaxInFlight());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        KingfisherGrpc.KingfisherFutureStub deviceStub = this.futureStub.withOption(ChannelPool.AFFINITY, deviceRef.getDevice());
+
+        long start = System.nanoTime();
+        long lastSent = start;
+        AtomicLong lastDone = new AtomicLong(start);
+        boolean serial = sequence.getMaxInFlight() == 1;
+        for (int i = 0; i < keys.size(); i++) {
+            int index = i;
+            String key = keys.get(i);
+            pending[i] = CompletableFuture.completedFuture(null);
+
+            Throwable stop = sequence.isStopOnFailure() ? failure.get() : null;
+            if (stop == null) {
+                try {
+                    inFlight.acquire();
+                    // an earlier key may have failed while this one waited
+                    if (sequence.isStopOnFailure() && failure.get() != null) {
+                        inFlight.release();
+                        stop = failure.get();
+                    } else {
+                        // acquired with a limit of one means the previous key has been answered
+                        long wait = (serial ? lastDone.get() : lastSent) + sequence.getDelayNanos(i) - System.nanoTime();
+                        if (wait > 0) {
+                            try {
+                                TimeUnit.NANOSECONDS.sleep(wait);
+                            } catch (InterruptedException e) {
+                                inFlight.release();
+                                throw e;
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stop = e;
+                }
+            }
+            if (stop != null) {
+                results[i] = KeyPressResult.skipped(i, key, stop);
+                continue;
+            }
+
+            long sentAt = System.nanoTime();
+            lastSent = sentAt;
+            pending[i] = Utils.toCompletableFuture(deviceStub.pressKey(pressKeyRequest(key)), Runnable::run)
+                    .handle((res, e) -> {
+                        Throwable error = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                        if (error != null) {
+                            failure.compareAndSet(null, error);
+                        }
+                        long doneAt = System.nanoTime();
+                        results[index] = KeyPressResult.completed(index, key, sentAt - start, doneAt - sentAt, error);
+                        lastDone.set(doneAt);
+                        inFlight.release();
+                        return null;
+                    });
         }
-        PressKeyResponse res = this.stub.pressKey(req.build());
+        CompletableFuture.allOf(pending).join();
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Press a key sequence asynchronously. The sequence is paced on a thread of the executor.
+     *
+     * @param sequence the sequence
+     * @param executor the executor
+     * @return the result of each key, in order
+     */
+    public CompletableFuture<List<KeyPressResult>> pressKeysAsync(KeySequence sequence, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> pressKeys(sequence), executor);
     }
 
 
@@ -223,31 +426,113 @@ public class Device {
      * @return the byte string
      */
     public ByteString screenshot() {
-
-        ScreenshotRequest.Builder req = ScreenshotRequest.newBuilder()
-                .setDeviceId(deviceRef.getDevice())
-                .setOrg(deviceRef.getOrg());
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
-        }
-        ScreenshotResponse res = this.stub.screenshot(req.build());
+        ScreenshotResponse res = this.stub.screenshot(screenshotRequest);
         return res.getResult().getImage();
 
     }
 
+    /**
+     * Screenshot asynchronously.
+     *
+     * @param executor the executor the future completes on
+     * @return the byte string future
+     */
+    public CompletableFuture<ByteString> screenshotAsync(Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.screenshot(screenshotRequest),
+                res -> res.getResult().getImage(), executor);
+    }
+
+    /**
+     * Screenshot as a read only buffer. The buffer is a view over the received image, so no copy
+     * is made beyond the one taken when the response was parsed.
+     *
+     * @return the byte buffer
+     */
+    public ByteBuffer screenshotBuffer() {
+        return screenshot().asReadOnlyByteBuffer();
+    }
+
+    /**
+     * Write a screenshot to a channel, such as a file or socket, without copying it into a byte
+     * array first.
+     *
+     * @param channel the channel
+     * @return the number of bytes written
+     * @throws IOException the io exception
+     */
+    public long screenshotTo(WritableByteChannel channel) throws IOException {
+        return Utils.writeTo(screenshot(), channel);
+    }
+
+    /**
+     * Wait for the screen to settle, with the default settle options.
+     *
+     * @param timeout the timeout
+     * @param unit    the unit
+     * @return the settled screenshot
+     * @throws TimeoutException     if the screen is still changing when the timeout expires
+     * @throws InterruptedException the interrupted exception
+     */
+    public ByteString waitForStableScreen(long timeout, TimeUnit unit) throws TimeoutException, InterruptedException {
+        return ScreenSettle.defaults().waitForStable(this, timeout, unit);
+    }
+
+    /**
+     * Wait for the screen to differ from a reference screenshot, with the default settle options.
+     *
+     * @param reference the reference screenshot
+     * @param timeout   the timeout
+     * @param unit      the unit
+     * @return the first changed screenshot
+     * @throws TimeoutException     if the screen has not changed when the timeout expires
+     * @throws InterruptedException the interrupted exception
+     */
+    public ByteString waitForScreenChange(ByteString reference, long timeout, TimeUnit unit) throws TimeoutException, InterruptedException {
+        return ScreenSettle.defaults().waitForChange(this, reference, timeout, unit);
+    }
+
+    /**
+     * Start capturing screenshots continuously on a dedicated thread.
+     *
+     * @param framesPerSecond the target frame rate
+     * @param capacity        the number of frames buffered before the oldest are dropped
+     * @return the screen capture, close it to stop capturing
+     */
+    public ScreenCapture startCapture(double framesPerSecond, int capacity) {
+        return startCapture(framesPerSecond, capacity, null);
+    }
+
+    /**
+     * Start capturing screenshots continuously.
+     *
+     * @param framesPerSecond the target frame rate
+     * @param capacity        the number of frames buffered before the oldest are dropped
+     * @param scheduler       the scheduler that paces the captures
+     * @return the screen capture, close it to stop capturing
+     */
+    public ScreenCapture startCapture(double framesPerSecond, int capacity, ScheduledExecutorService scheduler) {
+        ScreenCapture capture = new ScreenCapture(this, capacity, scheduler);
+        capture.start(framesPerSecond);
+        return capture;
+    }
+
     /**
      * Check alive check alive response.
      *
      * @return the check alive response
      */
     public CheckAliveResponse checkAlive() {
-        CheckAliveRequest.Builder req = CheckAliveRequest.newBuilder()
-                .setDeviceId(deviceRef.getDevice())
-                .setOrg(deviceRef.getOrg());
-        if(ownerSpec != null) {
-             req.setOwner(ownerSpec);
-        }
-        return this.stub.checkAlive(req.build());
+        return this.stub.checkAlive(checkAliveRequest);
+    }
+
+    /**
+     * Check alive asynchronously.
+     *
+     * @param executor the executor the future completes on
+     * @return the check alive response future
+     */
+    public CompletableFuture<CheckAliveResponse> checkAliveAsync(Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.checkAlive(checkAliveRequest), executor);
     }
 
     /**
@@ -257,16 +542,18 @@ public class Device {
      * @return the reboot response
      */
     public RebootResponse reboot(RebootType rebootType) {
+        return this.stub.reboot(rebootRequest(rebootType));
+    }
 
-        RebootRequest.Builder req = RebootRequest.newBuilder()
-                .setDeviceId(deviceRef.getDevice())
-                .setReservationSecret(secretManager.get(deviceRef.getDevice()))
-                .setRebootType(rebootType)
-                .setOrg(deviceRef.getOrg());
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
-        }
-        return this.stub.reboot(req.build());
+    /**
+     * Reboot asynchronously.
+     *
+     * @param rebootType the reboot type
+     * @param executor   the executor the future completes on
+     * @return the reboot response future
+     */
+    public CompletableFuture<RebootResponse> rebootAsync(RebootType rebootType, Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.reboot(rebootRequest(rebootType)), executor);
     }
 
     /**
@@ -275,13 +562,17 @@ public class Device {
      * @return the redirector type
      */
     public GetRedirectorResponse getRedirectorType() {
-        GetRedirectorRequest.Builder req = GetRedirectorRequest.newBuilder()
-                .setOrg(deviceRef.getOrg())
-                .setDeviceId(deviceRef.getDevice());
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
-        }
-        return this.stub.getRedirectorType(req.build());
+        return this.stub.getRedirectorType(redirectorTypeRequest);
+    }
+
+    /**
+     * Gets redirector type asynchronously.
+     *
+     * @param executor the executor the future completes on
+     * @return the redirector type future
+     */
+    public CompletableFuture<GetRedirectorResponse> getRedirectorTypeAsync(Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.getRedirectorType(redirectorTypeRequest), executor);
     }
 
     /**
@@ -292,15 +583,19 @@ public class Device {
      * @return the redirect link response
      */
     public RedirectLinkResponse redirect(String link, RedirectorType list) {
-        RedirectLinkRequest.Builder req = RedirectLinkRequest.newBuilder()
-                .setOrg(deviceRef.getOrg())
-                .setDeviceId(deviceRef.getDevice())
-                .setLink(link)
-                .setList(list.toString());
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
-        }
-        return this.stub.redirect(req.build());
+        return this.stub.redirect(redirectRequest(link, list));
+    }
+
+    /**
+     * Redirect asynchronously.
+     *
+     * @param link     the link
+     * @param list     the list
+     * @param executor the executor the future completes on
+     * @return the redirect link response future
+     */
+    public CompletableFuture<RedirectLinkResponse> redirectAsync(String link, RedirectorType list, Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.redirect(redirectRequest(link, list)), executor);
     }
 
     /**
@@ -311,15 +606,154 @@ public class Device {
      * @return the simulate voice input response
      */
     public SimulateVoiceInputResponse simulateVoiceInput(String phrase, String language) {
-        SimulateVoiceInputRequest.Builder req = SimulateVoiceInputRequest.newBuilder()
-                .setOrg(deviceRef.getOrg())
-                .setDeviceId(deviceRef.getDevice())
+        return this.stub.simulateVoiceInput(simulateVoiceInputRequest(phrase, language));
+    }
+
+    /**
+     * Simulate voice input asynchronously.
+     *
+     * @param phrase   the phrase
+     * @param language the language
+     * @param executor the executor the future completes on
+     * @return the simulate voice input response future
+     */
+    public CompletableFuture<SimulateVoiceInputResponse> simulateVoiceInputAsync(String phrase, String language, Executor executor) {
+        return Utils.toCompletableFuture(this.futureStub.simulateVoiceInput(simulateVoiceInputRequest(phrase, language)), executor);
+    }
+
+    private LockDeviceRequest lockRequest(String secret, int durationSeconds) {
+        LockDeviceRequest.Builder req = lockTemplate.toBuilder()
+                .setDurationSeconds(durationSeconds);
+        if(secret != null) {
+            req.setReservationSecret(secret);
+        }
+        return req.build();
+    }
+
+    private UnlockDeviceRequest unlockRequest(String secret) {
+        return unlockTemplate.toBuilder()
+                .setReservationSecret(secret)
+                .build();
+    }
+
+    private LaunchAppRequest.Builder launchAppRequest(AppConfig appConfig) {
+        return templates().launchApp.toBuilder()
+                .setAppConfig(appConfig);
+    }
+
+    private LaunchAppRequest launchAppRequest(AppConfig appConfig, DeeplinkParams deepLinkParams) {
+        return launchAppRequest(appConfig)
+                .setNotStackable(deepLinkParams.isNotStackable())
+                .setDisableVoiceOut((deepLinkParams.isDisableVoiceOut()))
+                .setDryRun(deepLinkParams.isDryRun())
+                .setVoiceGuidanceMode(deepLinkParams.getVoiceGuidanceMode())
+                .putAllAdditionalParams(deepLinkParams.getAdditionalParams())
+                .setEnableScreensaver(deepLinkParams.isEnableScreensaver())
+                .build();
+    }
+
+    private DeeplinkRequest deeplinkRequest(String deeplink) {
+
+        if (StringUtils.stripToNull(deeplink) == null) {
+            throw new IllegalArgumentException("deeplink  must be provided");
+        }
+
+        return templates().deeplink.toBuilder()
+                .setDeeplink(deeplink)
+                .build();
+    }
+
+    private PressKeyRequest pressKeyRequest(String key) {
+
+        if (StringUtils.stripToNull(key) == null) {
+            throw new IllegalArgumentException("key  must be provided");
+        }
+
+        return templates().pressKey.toBuilder()
+                .setKey(key)
+                .build();
+    }
+
+
+
+    private RebootRequest rebootRequest(RebootType rebootType) {
+        return templates().reboot.toBuilder()
+                .setRebootType(rebootType)
+                .build();
+    }
+
+
+    private RedirectLinkRequest redirectRequest(String link, RedirectorType list) {
+        return redirectTemplate.toBuilder()
+                .setLink(link)
+                .setList(list.toString())
+                .build();
+    }
+
+    private SimulateVoiceInputRequest simulateVoiceInputRequest(String phrase, String language) {
+        return templates().simulateVoiceInput.toBuilder()
                 .setPhrase(phrase)
                 .setLanguage(language)
-                .setReservationSecret(secretManager.get(deviceRef.getDevice()));
-        if(ownerSpec != null) {
-            req.setOwner(ownerSpec);
+                .build();
+    }
+
+    /**
+     * Request prototypes carrying the current reservation secret, rebuilt only when it changes.
+     */
+    private Templates templates() {
+        String secret = secretManager.get(deviceRef.getDevice());
+        Templates current = this.templates;
+        if (current == null || !Objects.equals(current.secret, secret)) {
+            current = new Templates(secret);
+            this.templates = current;
+        }
+        return current;
+    }
+
+    private final class Templates {
+        private final String secret;
+        private final LaunchAppRequest launchApp;
+        private final DeeplinkRequest deeplink;
+        private final PressKeyRequest pressKey;
+        private final RebootRequest reboot;
+        private final SimulateVoiceInputRequest simulateVoiceInput;
+
+        private Templates(String secret) {
+            this.secret = secret;
+            String reservationSecret = (secret != null) ? secret : "";
+
+            LaunchAppRequest.Builder launchApp = LaunchAppRequest.newBuilder()
+                    .setDeviceId(deviceRef.getDevice())
+                    .setReservationSecret(reservationSecret)
+                    .setOrg(deviceRef.getOrg());
+            DeeplinkRequest.Builder deeplink = DeeplinkRequest.newBuilder()
+                    .setDeviceId(deviceRef.getDevice())
+                    .setReservationSecret(reservationSecret)
+                    .setOrg(deviceRef.getOrg());
+            PressKeyRequest.Builder pressKey = PressKeyRequest.newBuilder()
+                    .setDeviceId(deviceRef.getDevice())
+                    .setReservationSecret(reservationSecret)
+                    .setOrg(deviceRef.getOrg());
+            RebootRequest.Builder reboot = RebootRequest.newBuilder()
+                    .setDeviceId(deviceRef.getDevice())
+                    .setReservationSecret(reservationSecret)
+                    .setOrg(deviceRef.getOrg());
+            SimulateVoiceInputRequest.Builder simulateVoiceInput = SimulateVoiceInputRequest.newBuilder()
+                    .setOrg(deviceRef.getOrg())
+                    .setDeviceId(deviceRef.getDevice())
+                    .setReservationSecret(reservationSecret);
+            if(ownerSpec != null) {
+                launchApp.setOwner(ownerSpec);
+                deeplink.setOwner(ownerSpec);
+                pressKey.setOwner(ownerSpec);
+                reboot.setOwner(ownerSpec);
+                simulateVoiceInput.setOwner(ownerSpec);
+            }
+            this.launchApp = launchApp.build();
+            this.deeplink = deeplink.build();
+            this.pressKey = pressKey.build();
+            this.reboot = reboot.build();
+            this.simulateVoiceInput = simulateVoiceInput.build();
         }
-        return this.stub.simulateVoiceInput(req.build());
     }
 }
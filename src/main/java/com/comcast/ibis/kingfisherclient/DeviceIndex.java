@@ -0,0 +1,187 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The type Device index. An immutable device list with hash indexes on the fields a
+ * {@link SearchPredicate.Match} can select on. Matches resolve to posting bitsets, and
+ * {@link SearchPredicate.And} / {@link SearchPredicate.Or} combine them by intersection and union,
+ * {@link SearchPredicate.In} by union of its values, and {@link SearchPredicate.Not} by complement;
+ * only the operands that cannot be answered from an index are evaluated on the remaining candidates.
+ */
+class DeviceIndex {
+    private static final BitSet EMPTY = new BitSet();
+
+    private final List<DeviceData> devices;
+    private final Map<SearchPredicate.Field, Map<String, BitSet>> fields = new EnumMap<>(SearchPredicate.Field.class);
+    private final Map<String, Map<String, BitSet>> labels = new HashMap<>();
+
+    private DeviceIndex(List<DeviceData> devices) {
+        this.devices = Collections.unmodifiableList(new ArrayList<>(devices));
+    }
+
+    /**
+     * Build device index.
+     *
+     * @param devices the devices
+     * @return the device index
+     */
+    static DeviceIndex build(List<DeviceData> devices) {
+        DeviceIndex index = new DeviceIndex(devices);
+        for (SearchPredicate.Field field : SearchPredicate.Field.values()) {
+            if (!field.isKeyed()) {
+                index.fields.put(field, new HashMap<>());
+            }
+        }
+        for (int i = 0; i < index.devices.size(); i++) {
+            DeviceData device = index.devices.get(i);
+            for (Map.Entry<SearchPredicate.Field, Map<String, BitSet>> entry : index.fields.entrySet()) {
+                post(entry.getValue(), entry.getKey().valueOf(device, null), i);
+            }
+            for (Map.Entry<String, String> label : device.getMetadata().getLabelsMap().entrySet()) {
+                post(index.labels.computeIfAbsent(label.getKey(), k -> new HashMap<>()), label.getValue(), i);
+            }
+        }
+        return index;
+    }
+
+    private static void post(Map<String, BitSet> postings, String value, int position) {
+        postings.computeIfAbsent(value, v -> new BitSet()).set(position);
+    }
+
+    /**
+     * Gets devices.
+     *
+     * @return all indexed devices
+     */
+    List<DeviceData> devices() {
+        return devices;
+    }
+
+    /**
+     * Select the devices matching a predicate.
+     *
+     * @param predicate the predicate
+     * @return the matching devices, in inventory order
+     */
+    List<DeviceData> select(Predicate<DeviceData> predicate) {
+        Candidates candidates = candidates(predicate);
+        List<DeviceData> result = new ArrayList<>();
+        if (candidates == null) {
+            devices.forEach(device -> {
+                if (predicate.test(device)) {
+                    result.add(device);
+                }
+            });
+            return result;
+        }
+        BitSet bits = candidates.bits;
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            DeviceData device = devices.get(i);
+            if (candidates.exact || predicate.test(device)) {
+                result.add(device);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Superset of the positions matching a predicate, or null when no index applies.
+     */
+    private Candidates candidates(Predicate<DeviceData> predicate) {
+        if (predicate instanceof SearchPredicate.Match) {
+            BitSet bits = postings((SearchPredicate.Match) predicate);
+            return bits == null ? null : new Candidates(bits, true);
+        }
+        if (predicate instanceof SearchPredicate.In) {
+            SearchPredicate.In in = (SearchPredicate.In) predicate;
+            BitSet bits = new BitSet();
+            for (String value : in.getValues()) {
+                BitSet valueBits = postings(new SearchPredicate.Match(in.getField(), in.getKey(), value));
+                if (valueBits == null) {
+                    return null;
+                }
+                bits.or(valueBits);
+            }
+            return new Candidates(bits, true);
+        }
+        if (predicate instanceof SearchPredicate.Not) {
+            Candidates operandCandidates = candidates(((SearchPredicate.Not) predicate).getOperand());
+            if (operandCandidates == null || !operandCandidates.exact) {
+                // the complement of a superset is not a superset
+                return null;
+            }
+            BitSet bits = new BitSet(devices.size());
+            bits.set(0, devices.size());
+            bits.andNot(operandCandidates.bits);
+            return new Candidates(bits, true);
+        }
+        if (predicate instanceof SearchPredicate.And) {
+            BitSet bits = null;
+            boolean exact = true;
+            for (Predicate<DeviceData> operand : ((SearchPredicate.And) predicate).getOperands()) {
+                Candidates operandCandidates = candidates(operand);
+                if (operandCandidates == null) {
+                    exact = false;
+                    continue;
+                }
+                if (bits == null) {
+                    bits = (BitSet) operandCandidates.bits.clone();
+                } else {
+                    bits.and(operandCandidates.bits);
+                }
+                exact &= operandCandidates.exact;
+            }
+            return bits == null ? null : new Candidates(bits, exact);
+        }
+        if (predicate instanceof SearchPredicate.Or) {
+            BitSet bits = new BitSet();
+            boolean exact = true;
+            for (Predicate<DeviceData> operand : ((SearchPredicate.Or) predicate).getOperands()) {
+                Candidates operandCandidates = candidates(operand);
+                if (operandCandidates == null) {
+                    // one unindexed alternative may match anything
+                    return null;
+                }
+                bits.or(operandCandidates.bits);
+                exact &= operandCandidates.exact;
+            }
+            return new Candidates(bits, exact);
+        }
+        return null;
+    }
+
+    /**
+     * Positions holding the matched value, or null when the field is not indexed.
+     */
+    private BitSet postings(SearchPredicate.Match match) {
+        Map<String, BitSet> postings;
+        if (match.getField() == SearchPredicate.Field.LABEL) {
+            postings = labels.getOrDefault(match.getKey(), Collections.emptyMap());
+        } else if (fields.containsKey(match.getField())) {
+            postings = fields.get(match.getField());
+        } else {
+            return null;
+        }
+        return match.getValue() == null ? EMPTY : postings.getOrDefault(match.getValue(), EMPTY);
+    }
+
+    private static class Candidates {
+        private final BitSet bits;
+        private final boolean exact;
+
+        private Candidates(BitSet bits, boolean exact) {
+            this.bits = bits;
+            this.exact = exact;
+        }
+    }
+}
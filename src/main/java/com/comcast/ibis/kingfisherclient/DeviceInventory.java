@@ -0,0 +1,187 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * The type Device inventory. Caches the org device list for a time to live. Once that expires the
+ * stale list is still served for a grace period while a single background load revalidates it;
+ * after the grace period callers wait for a fresh load, and concurrent waiters share one request.
+ * Each loaded list is indexed once, so searches against it do not scan the whole org.
+ *
+ * <p>No lock is held while a load is awaited: the load in flight is a shared future, and a loaded
+ * list is installed by a compare and set, so the completion callback never blocks.
+ */
+class DeviceInventory {
+    private final Supplier<CompletableFuture<List<DeviceData>>> loader;
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final AtomicReference<CompletableFuture<DeviceIndex>> loading = new AtomicReference<>();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(null, 0, 0));
+
+    /**
+     * Instantiates a new Device inventory.
+     *
+     * @param loader      the loader
+     * @param ttlMillis   the time to live, or 0 to disable caching
+     * @param staleMillis how long an expired list may still be served while it is revalidated
+     */
+    DeviceInventory(Supplier<CompletableFuture<List<DeviceData>>> loader, long ttlMillis, long staleMillis) {
+        this.loader = loader;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(staleMillis);
+    }
+
+    /**
+     * Is enabled boolean.
+     *
+     * @return whether the inventory is cached at all
+     */
+    boolean isEnabled() {
+        return ttlNanos > 0;
+    }
+
+    /**
+     * Gets the device list.
+     *
+     * @return the devices
+     */
+    List<DeviceData> get() {
+        if (!isEnabled()) {
+            return join(loader.get());
+        }
+        return index().devices();
+    }
+
+    /**
+     * Select the devices matching a predicate.
+     *
+     * @param predicate the predicate
+     * @return the matching devices
+     */
+    List<DeviceData> select(Predicate<DeviceData> predicate) {
+        if (!isEnabled()) {
+            return join(loader.get()).stream().filter(predicate).collect(Collectors.toList());
+        }
+        return index().select(predicate);
+    }
+
+    private DeviceIndex index() {
+        Snapshot current = snapshot.get();
+        if (current.index != null) {
+            long age = System.nanoTime() - current.loadedAt;
+            if (age < ttlNanos) {
+                return current.index;
+            }
+            if (age < ttlNanos + staleNanos) {
+                // on failure the stale list keeps being served until the grace period ends
+                load();
+                return current.index;
+            }
+        }
+        return join(load());
+    }
+
+    /**
+     * Drop the cached list; the next read loads a fresh one. A load already in flight is not
+     * shared with later reads and does not install its list.
+     */
+    void invalidate() {
+        Snapshot current;
+        do {
+            current = snapshot.get();
+        } while (!snapshot.compareAndSet(current, new Snapshot(null, 0, current.generation + 1)));
+        loading.set(null);
+    }
+
+    /**
+     * The load in flight, or a new one when there is none.
+     */
+    private CompletableFuture<DeviceIndex> load() {
+        while (true) {
+            CompletableFuture<DeviceIndex> pending = loading.get();
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<DeviceIndex> next = new CompletableFuture<>();
+            if (loading.compareAndSet(null, next)) {
+                start(next);
+                return next;
+            }
+        }
+    }
+
+    private void start(CompletableFuture<DeviceIndex> next) {
+        long loadGeneration = snapshot.get().generation;
+        CompletableFuture<List<DeviceData>> future;
+        try {
+            future = loader.get();
+        } catch (RuntimeException e) {
+            loading.compareAndSet(next, null);
+            next.completeExceptionally(e);
+            return;
+        }
+        future.whenComplete((devices, e) -> {
+            DeviceIndex index = null;
+            Throwable error = e;
+            if (error == null) {
+                try {
+                    index = DeviceIndex.build(devices);
+                    install(index, loadGeneration);
+                } catch (RuntimeException buildError) {
+                    error = buildError;
+                }
+            }
+            // cleared first, so a caller retrying after a failure starts a new load
+            loading.compareAndSet(next, null);
+            if (error != null) {
+                next.completeExceptionally(error);
+            } else {
+                next.complete(index);
+            }
+        });
+    }
+
+    private void install(DeviceIndex index, long loadGeneration) {
+        Snapshot loaded = new Snapshot(index, System.nanoTime(), loadGeneration);
+        Snapshot current;
+        do {
+            current = snapshot.get();
+            if (current.generation != loadGeneration) {
+                // invalidated while loading
+                return;
+            }
+        } while (!snapshot.compareAndSet(current, loaded));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Snapshot {
+        private final DeviceIndex index;
+        private final long loadedAt;
+        private final long generation;
+
+        private Snapshot(DeviceIndex index, long loadedAt, long generation) {
+            this.index = index;
+            this.loadedAt = loadedAt;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * The type Device pool. Hands out leases on devices matching a search predicate, on top of the
+ * reservations of a {@link KingfisherClient}. Callers that find no free device wait in a FIFO
+ * queue: a device returned to the pool goes straight to the longest waiting caller it matches,
+ * still reserved, and devices freed elsewhere are claimed for waiters in arrival order. A caller
+ * whose devices are all busy does not hold up a later caller asking for different devices.
+ * Devices the client's {@link HealthMonitor} knows to be dead are not reserved.
+ *
+ * <pre>
+ * try (DevicePool.Lease lease = pool.acquire(Search.make("Sony"), 10, TimeUnit.MINUTES)) {
+ *     lease.getDevice().deeplink("...");
+ * }
+ * </pre>
+ */
+public class DevicePool implements AutoCloseable {
+    private static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+
+    private final KingfisherClient client;
+    private final long pollIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final Map<String, Lease> leased = new HashMap<>();
+    private final Map<String, Long> busyUntil = new HashMap<>();
+    private boolean closed;
+
+    private final ReentrantLock scanning = new ReentrantLock();
+    private final AtomicBoolean rescan = new AtomicBoolean();
+    private volatile long lastScan = System.nanoTime();
+
+    private DevicePool(DevicePoolBuilder builder) {
+        this.client = builder.client;
+        this.pollIntervalNanos = builder.pollIntervalNanos;
+    }
+
+    /**
+     * Acquire a device, waiting as long as it takes.
+     *
+     * @param predicate the devices that will do
+     * @return the lease
+     * @throws InterruptedException the interrupted exception
+     */
+    public Lease acquire(Predicate<DeviceData> predicate) throws InterruptedException {
+        try {
+            return acquire(predicate, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Acquire a device. Matching devices held by no one are reserved; otherwise the caller
+     * waits its turn for one to be returned to the pool or freed elsewhere.
+     *
+     * @param predicate the devices that will do
+     * @param timeout   the longest to wait
+     * @param unit      the unit
+     * @return the lease, which must be closed to return the device
+     * @throws InterruptedException the interrupted exception
+     * @throws TimeoutException     when no matching device became available in time
+     */
+    public Lease acquire(Predicate<DeviceData> predicate, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        Objects.requireNonNull(predicate, "predicate");
+        long deadline = System.nanoTime() + Math.min(unit.toNanos(timeout), Long.MAX_VALUE / 2);
+        Waiter waiter = new Waiter(predicate);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("device pool is closed");
+            }
+            waiters.addLast(waiter);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            scan();
+            lock.lock();
+            try {
+                while (waiter.lease == null) {
+                    if (closed) {
+                        throw new IllegalStateException("device pool is closed");
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new TimeoutException("no matching device became available");
+                    }
+                    if (waiter.ready.awaitNanos(Math.min(remaining, pollIntervalNanos)) <= 0 && waiter.lease == null
+                            && System.nanoTime() - lastScan >= pollIntervalNanos) {
+                        // devices freed outside this pool send no signal, look again unless another waiter just did
+                        lock.unlock();
+                        try {
+                            scan();
+                        } finally {
+                            lock.lock();
+                        }
+                    }
+                }
+                waiters.remove(waiter);
+                return waiter.lease;
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException | TimeoutException | RuntimeException e) {
+            Lease late = null;
+            lock.lock();
+            try {
+                waiters.remove(waiter);
+                late = waiter.lease;
+                waiter.cancelled = true;
+            } finally {
+                lock.unlock();
+            }
+            if (late != null) {
+                // assigned while giving up, pass it on
+                try {
+                    giveBack(late.device, late.data);
+                } catch (RuntimeException releaseError) {
+                    e.addSuppressed(releaseError);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets waiting.
+     *
+     * @return the number of callers waiting for a device
+     */
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets leased.
+     *
+     * @return the number of devices currently leased out
+     */
+    public int getLeased() {
+        lock.lock();
+        try {
+            return leased.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the pool. Waiting callers fail with an {@link IllegalStateException}; devices still
+     * leased are released as their leases close.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            waiters.forEach(waiter -> waiter.ready.signal());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claim free devices for waiters, oldest first. Only one thread scans at a time; a request
+     * made meanwhile makes it scan again rather than being lost.
+     */
+    private void scan() {
+        rescan.set(true);
+        while (rescan.get() && scanning.tryLock()) {
+            try {
+                while (rescan.getAndSet(false)) {
+                    lastScan = System.nanoTime();
+                    for (Waiter waiter : pendingWaiters()) {
+                        claimFor(waiter);
+                    }
+                }
+            } finally {
+                scanning.unlock();
+            }
+        }
+    }
+
+    private List<Waiter> pendingWaiters() {
+        lock.lock();
+        try {
+            List<Waiter> pending = new ArrayList<>();
+            for (Waiter waiter : waiters) {
+                if (waiter.lease == null && !waiter.cancelled) {
+                    pending.add(waiter);
+                }
+            }
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void claimFor(Waiter waiter) {
+        List<DeviceData> candidates;
+        try {
+            candidates = client.select(waiter.predicate);
+        } catch (RuntimeException e) {
+            // the waiter looks again at its next poll
+            return;
+        }
+        for (DeviceData data : candidates) {
+            String deviceId = data.getReference().getDevice();
+            lock.lock();
+            try {
+                if (waiter.lease != null || waiter.cancelled || closed) {
+                    return;
+                }
+                Long busy = busyUntil.get(deviceId);
+                if (leased.containsKey(deviceId) || client.isReserved(deviceId)
+                        || client.getHealthMonitor().isKnownDead(deviceId)
+                        || (busy != null && busy - System.nanoTime() > 0)) {
+                    continue;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            Device device = client.device(data);
+            try {
+                client.reserve(device);
+            } catch (Error | RuntimeException e) {
+                // held by someone else, leave it alone for a poll interval
+                lock.lock();
+                try {
+                    busyUntil.put(deviceId, System.nanoTime() + pollIntervalNanos);
+                } finally {
+                    lock.unlock();
+                }
+                continue;
+            }
+
+            lock.lock();
+            try {
+                busyUntil.remove(deviceId);
+                if (waiter.lease == null && !waiter.cancelled && !closed) {
+                    assign(waiter, device, data);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // the waiter gave up or was handed a returned device while this one was being reserved
+            try {
+                giveBack(device, data);
+            } catch (RuntimeException e) {
+                // no longer renewed, the lease runs out
+            }
+            return;
+        }
+    }
+
+    /**
+     * Hand a reserved device to the longest waiting caller it matches, or release it.
+     */
+    private void giveBack(Device device, DeviceData data) {
+        lock.lock();
+        try {
+            leased.remove(device.deviceRef.getDevice());
+            if (!closed) {
+                for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                    Waiter waiter = it.next();
+                    if (waiter.lease == null && !waiter.cancelled && waiter.predicate.test(data)) {
+                        assign(waiter, device, data);
+                        return;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        client.release(device);
+    }
+
+    private void assign(Waiter waiter, Device device, DeviceData data) {
+        Lease lease = new Lease(device, data);
+        leased.put(device.deviceRef.getDevice(), lease);
+        waiter.lease = lease;
+        waiter.ready.signal();
+    }
+
+    /**
+     * New builder device pool builder.
+     *
+     * @param client the client whose reservations back the pool
+     * @return the device pool builder
+     */
+    public static DevicePoolBuilder newBuilder(KingfisherClient client) {
+        return new DevicePoolBuilder(client);
+    }
+
+    private final class Waiter {
+        private final Predicate<DeviceData> predicate;
+        private final Condition ready = lock.newCondition();
+        private Lease lease;
+        private boolean cancelled;
+
+        private Waiter(Predicate<DeviceData> predicate) {
+            this.predicate = predicate;
+        }
+    }
+
+    /**
+     * The type Lease. A device reserved for one caller until the lease is closed.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Device device;
+        private final DeviceData data;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        private Lease(Device device, DeviceData data) {
+            this.device = device;
+            this.data = data;
+        }
+
+        /**
+         * Gets device.
+         *
+         * @return the device
+         */
+        public Device getDevice() {
+            return device;
+        }
+
+        /**
+         * Gets device data.
+         *
+         * @return the inventory entry the device was matched on
+         */
+        public DeviceData getDeviceData() {
+            return data;
+        }
+
+        /**
+         * Return the device to the pool. The next waiting caller it matches gets it still
+         * reserved; if there is none, the reservation is released. Closing twice has no effect.
+         *
+         * @throws io.grpc.StatusRuntimeException when the device could not be unlocked
+         */
+        @Override
+        public void close() {
+            if (returned.compareAndSet(false, true)) {
+                giveBack(device, data);
+            }
+        }
+    }
+
+    /**
+     * The type Device pool builder.
+     */
+    public static class DevicePoolBuilder {
+        private final KingfisherClient client;
+        private long pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_POLL_INTERVAL_MILLIS);
+
+        private DevicePoolBuilder(KingfisherClient client) {
+            this.client = Objects.requireNonNull(client, "client");
+        }
+
+        /**
+         * Sets poll interval, how often waiting callers look for devices freed outside the pool,
+         * and how long a device found held by someone else is skipped.
+         *
+         * @param interval the interval
+         * @param unit     the unit
+         * @return the poll interval
+         */
+        public DevicePoolBuilder setPollInterval(long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("poll interval must be positive");
+            }
+            this.pollIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Build device pool.
+         *
+         * @return the device pool
+         */
+        public DevicePool build() {
+            return new DevicePool(this);
+        }
+    }
+}
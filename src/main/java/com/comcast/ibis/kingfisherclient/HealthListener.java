@@ -0,0 +1,20 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.AliveStatus;
+
+/**
+ * The interface Health listener. Told when a device goes live or dead. It is called on the thread
+ * that completes the check, so it must be quick and must not block.
+ */
+public interface HealthListener {
+
+    /**
+     * On health changed. Called when a check finds a device's live flag differs from the previous
+     * check, and when the first check of a device finds it dead.
+     *
+     * @param device   the device
+     * @param previous the previous status, or null when the device had not been checked
+     * @param current  the current status
+     */
+    void onHealthChanged(Device device, AliveStatus previous, AliveStatus current);
+}
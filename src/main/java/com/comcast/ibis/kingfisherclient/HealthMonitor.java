@@ -0,0 +1,244 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.AliveStatus;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The type Health monitor. Caches the {@link AliveStatus} of each device for a time to live,
+ * filled by individual checks and by sweeps that check many devices concurrently, optionally on a
+ * schedule. Releases read the cached lock state instead of checking first, and device pools skip
+ * devices known to be dead.
+ */
+public class HealthMonitor {
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    private final long ttlNanos;
+    private final int parallelism;
+    private final Map<String, Entry> statuses = new ConcurrentHashMap<>();
+    private final List<HealthListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile ScheduledFuture<?> sweeps;
+
+    /**
+     * Instantiates a new Health monitor.
+     *
+     * @param scheduler   the scheduler of periodic sweeps
+     * @param executor    the executor that lists the devices of a periodic sweep
+     * @param ttlNanos    how long a status is trusted
+     * @param parallelism the maximum number of checks in flight during a sweep
+     */
+    HealthMonitor(ScheduledExecutorService scheduler, Executor executor, long ttlNanos, int parallelism) {
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.ttlNanos = ttlNanos;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets status.
+     *
+     * @param deviceId the device id
+     * @return the cached status, or null when the device was not checked within the time to live
+     */
+    public AliveStatus getStatus(String deviceId) {
+        Entry entry = statuses.get(deviceId);
+        return (entry != null && entry.isFresh()) ? entry.status : null;
+    }
+
+    /**
+     * Whether a recent check found the device dead.
+     *
+     * @param deviceId the device id
+     * @return true only if the cached status says the device is not live
+     */
+    public boolean isKnownDead(String deviceId) {
+        AliveStatus status = getStatus(deviceId);
+        return status != null && !status.getLive();
+    }
+
+    /**
+     * Check a device and cache the result.
+     *
+     * @param device the device
+     * @return the status future
+     */
+    public CompletableFuture<AliveStatus> check(Device device) {
+        return device.checkAliveAsync(DIRECT_EXECUTOR).thenApply(res -> {
+            record(device, res.getResult());
+            return res.getResult();
+        });
+    }
+
+    /**
+     * Check devices concurrently and wait for all of them.
+     *
+     * @param devices the devices
+     * @return the status of every device whose check succeeded, by device id
+     */
+    public Map<String, AliveStatus> sweep(List<Device> devices) {
+        try {
+            return sweepAsync(devices).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Check devices concurrently, at most the configured parallelism at a time. A failed check
+     * leaves the cached status of its device alone.
+     *
+     * @param devices the devices
+     * @return the future of the status of every device whose check succeeded, by device id
+     */
+    public CompletableFuture<Map<String, AliveStatus>> sweepAsync(List<Device> devices) {
+        Map<String, AliveStatus> results = new ConcurrentHashMap<>();
+        AtomicInteger next = new AtomicInteger();
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(parallelism, devices.size())];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = lane(devices, next, results);
+        }
+        return CompletableFuture.allOf(lanes).thenApply(v -> Collections.unmodifiableMap(results));
+    }
+
+    private CompletableFuture<Void> lane(List<Device> devices, AtomicInteger next, Map<String, AliveStatus> results) {
+        int index = next.getAndIncrement();
+        if (index >= devices.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Device device = devices.get(index);
+        CompletableFuture<AliveStatus> check;
+        try {
+            check = check(device);
+        } catch (RuntimeException e) {
+            check = new CompletableFuture<>();
+            check.completeExceptionally(e);
+        }
+        return check.handle((status, e) -> {
+            if (status != null) {
+                results.put(device.deviceRef.getDevice(), status);
+            }
+            return null;
+        }).thenCompose(v -> lane(devices, next, results));
+    }
+
+    /**
+     * Add a listener for live and dead transitions.
+     *
+     * @param listener the listener
+     */
+    public void addListener(HealthListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(HealthListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sweep the devices a supplier lists at a fixed delay. A sweep still running when the next is
+     * due makes that one skip.
+     *
+     * @param devices       the devices of each sweep, listed on the executor since it may block
+     * @param intervalNanos the delay between sweeps
+     */
+    void schedule(Supplier<List<Device>> devices, long intervalNanos) {
+        sweeps = scheduler.scheduleWithFixedDelay(() -> {
+            if (!sweeping.compareAndSet(false, true)) {
+                return;
+            }
+            CompletableFuture.supplyAsync(devices, executor)
+                    .thenCompose(this::sweepAsync)
+                    .whenComplete((res, e) -> sweeping.set(false));
+        }, 0, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop periodic sweeps.
+     */
+    void shutdown() {
+        ScheduledFuture<?> current = sweeps;
+        if (current != null) {
+            current.cancel(false);
+        }
+    }
+
+    /**
+     * Record the lock state this client just changed, so the cached status stays accurate
+     * without another check.
+     *
+     * @param deviceId the device id
+     * @param locked   whether the device is now locked
+     */
+    void updateLocked(String deviceId, boolean locked) {
+        statuses.computeIfPresent(deviceId, (id, entry) -> {
+            if (entry.status.getLocked() == locked) {
+                return entry;
+            }
+            AliveStatus.Builder status = entry.status.toBuilder().setLocked(locked);
+            if (!locked) {
+                status.clearLockedBy();
+            }
+            return new Entry(status.build(), entry.expiresAt);
+        });
+    }
+
+    /**
+     * Cache a status and tell listeners if the device went live or dead.
+     *
+     * @param device the device
+     * @param status the status
+     */
+    void record(Device device, AliveStatus status) {
+        Entry previous = statuses.put(device.deviceRef.getDevice(), new Entry(status, System.nanoTime() + ttlNanos));
+        boolean changed = (previous == null) ? !status.getLive() : previous.status.getLive() != status.getLive();
+        if (!changed) {
+            return;
+        }
+        for (HealthListener listener : listeners) {
+            try {
+                listener.onHealthChanged(device, (previous != null) ? previous.status : null, status);
+            } catch (RuntimeException e) {
+                // a broken listener must not fail the check
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final AliveStatus status;
+        private final long expiresAt;
+
+        private Entry(AliveStatus status, long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isFresh() {
+            return System.nanoTime() - expiresAt < 0;
+        }
+    }
+}
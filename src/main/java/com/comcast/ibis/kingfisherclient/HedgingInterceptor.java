@@ -0,0 +1,411 @@
+package com.comcast.ibis.kingfisherclient;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The type Hedging interceptor. Applies a {@link HedgingPolicy} to unary calls of the hedged
+ * methods. Each attempt is a separate call on the next channel, so with a channel pool the hedge
+ * travels over a different connection than the original.
+ */
+class HedgingInterceptor implements ClientInterceptor {
+    // hedge budget in thousandths of a hedge; every call earns ratio * 1000, every hedge spends 1000
+    private static final long TOKEN = 1000;
+    private static final long MAX_TOKENS = 10 * TOKEN;
+    private static final int WINDOW_SIZE = 256;
+
+    private final HedgingPolicy policy;
+    private final ScheduledExecutorService scheduler;
+    private final long earnedPerCall;
+    private final AtomicLong tokens = new AtomicLong(MAX_TOKENS);
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates a new Hedging interceptor.
+     *
+     * @param policy    the policy
+     * @param scheduler the scheduler that fires hedges
+     */
+    HedgingInterceptor(HedgingPolicy policy, ScheduledExecutorService scheduler) {
+        this.policy = policy;
+        this.scheduler = scheduler;
+        this.earnedPerCall = Math.max(1, Math.round(policy.getMaxHedgeRatio() * TOKEN));
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.newCall(method, callOptions);
+        }
+        String name = method.getFullMethodName().substring(method.getFullMethodName().lastIndexOf('/') + 1);
+        if (!policy.getMethods().contains(name)) {
+            return next.newCall(method, callOptions);
+        }
+        LatencyWindow window = latencies.computeIfAbsent(name, key -> new LatencyWindow());
+        return new HedgingCall<>(method, callOptions, next, window);
+    }
+
+    /**
+     * Gets hedges.
+     *
+     * @return the number of hedges sent
+     */
+    long getHedges() {
+        return hedges.get();
+    }
+
+    /**
+     * Gets hedge wins.
+     *
+     * @return the number of hedges that answered before the original
+     */
+    long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    private void earn() {
+        tokens.getAndUpdate(current -> Math.min(MAX_TOKENS, current + earnedPerCall));
+    }
+
+    private boolean spend() {
+        while (true) {
+            long current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+
+    private long delayNanos(LatencyWindow window) {
+        if (policy.getPercentile() > 0) {
+            long observed = window.percentile(policy.getPercentile(), policy.getMinSamples());
+            if (observed >= 0) {
+                return observed;
+            }
+        }
+        return policy.getDelay(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A window of the most recent latencies of a method. The percentile is recomputed every few
+     * samples rather than on every call.
+     *
+     * <p>Only the original attempt of a call is sampled, whether it succeeds or fails. When a hedge
+     * wins, the original is sampled at that moment, which is after the hedge delay. Sampling only
+     * winners would leave out the slow originals that hedging cuts short, and the percentile, and
+     * with it the hedge delay, would keep drifting down.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+        private int sinceComputed;
+        private long cached = -1;
+        private double cachedPercentile;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            sinceComputed++;
+        }
+
+        synchronized long percentile(double percentile, int minSamples) {
+            if (count < minSamples) {
+                return -1;
+            }
+            if (cached < 0 || sinceComputed >= 16 || cachedPercentile != percentile) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+                cached = sorted[Math.max(0, Math.min(count - 1, rank))];
+                cachedPercentile = percentile;
+                sinceComputed = 0;
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * A hedged unary call. Which attempt wins is decided under {@code lock}, but the caller's
+     * listener is only called after the lock is released, from the callback of the attempt that
+     * produced the event, so events reach the listener in order and on the call's executor.
+     */
+    private final class HedgingCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final CallOptions callOptions;
+        private final Channel next;
+        private final LatencyWindow window;
+        private final Object lock = new Object();
+        private final List<Attempt> attempts = new ArrayList<>(2);
+
+        private Listener<RespT> listener;
+        private Metadata headers;
+        private ReqT message;
+        private int requested;
+        private Attempt winner;
+        private boolean closed;
+        private boolean cancelled;
+        private String cancelMessage;
+        private Throwable cancelCause;
+        private ScheduledFuture<?> hedgeTimer;
+
+        private HedgingCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next, LatencyWindow window) {
+            this.method = method;
+            this.callOptions = callOptions;
+            this.next = next;
+            this.window = window;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            Attempt abandoned = null;
+            synchronized (lock) {
+                this.listener = responseListener;
+                this.headers = headers;
+                if (cancelled && !closed) {
+                    abandoned = startAttempt();
+                }
+            }
+            if (abandoned != null) {
+                abandoned.call.cancel(cancelMessage, cancelCause);
+            }
+        }
+
+        @Override
+        public void request(int numMessages) {
+            synchronized (lock) {
+                requested += numMessages;
+                for (Attempt attempt : attempts) {
+                    attempt.call.request(numMessages);
+                }
+            }
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            this.message = message;
+        }
+
+        @Override
+        public void halfClose() {
+            earn();
+            long delay = delayNanos(window);
+            synchronized (lock) {
+                if (cancelled || closed) {
+                    return;
+                }
+                launch();
+                if (!closed) {
+                    hedgeTimer = scheduler.schedule(this::hedge, delay, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            List<Attempt> running;
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                cancelMessage = message;
+                cancelCause = cause;
+                if (hedgeTimer != null) {
+                    hedgeTimer.cancel(false);
+                    hedgeTimer = null;
+                }
+                // nothing was sent yet: start an attempt only to cancel it, so the listener is
+                // closed by that attempt on the call's executor like any other close
+                if (attempts.isEmpty() && !closed && listener != null) {
+                    startAttempt();
+                }
+                running = new ArrayList<>(attempts);
+            }
+            for (Attempt attempt : running) {
+                attempt.call.cancel(message, cause);
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        private void hedge() {
+            synchronized (lock) {
+                hedgeTimer = null;
+                if (winner != null || closed || !spend()) {
+                    return;
+                }
+                hedges.incrementAndGet();
+                launch();
+            }
+        }
+
+        private Attempt startAttempt() {
+            Metadata attemptHeaders = new Metadata();
+            attemptHeaders.merge(headers);
+            Attempt attempt = new Attempt(next.newCall(method, callOptions), attempts.isEmpty());
+            attempts.add(attempt);
+            attempt.call.start(attempt, attemptHeaders);
+            return attempt;
+        }
+
+        private void launch() {
+            Attempt attempt = startAttempt();
+            if (requested > 0) {
+                attempt.call.request(requested);
+            }
+            attempt.call.sendMessage(message);
+            attempt.call.halfClose();
+        }
+
+        /**
+         * Makes the attempt the winner. Must be called under {@code lock}; the returned losers are
+         * cancelled by the caller after the lock is released.
+         */
+        private List<Attempt> commit(Attempt attempt) {
+            winner = attempt;
+            if (hedgeTimer != null) {
+                hedgeTimer.cancel(false);
+                hedgeTimer = null;
+            }
+            if (!attempt.primary) {
+                hedgeWins.incrementAndGet();
+            }
+            List<Attempt> losers = new ArrayList<>(1);
+            for (Attempt other : attempts) {
+                if (other != attempt && !other.closed) {
+                    other.recordLatency();
+                    losers.add(other);
+                }
+            }
+            return losers;
+        }
+
+        private final class Attempt extends ClientCall.Listener<RespT> {
+            private final ClientCall<ReqT, RespT> call;
+            private final boolean primary;
+            private final long startedAt = System.nanoTime();
+            private Metadata headers;
+            private boolean closed;
+            private boolean recorded;
+
+            private Attempt(ClientCall<ReqT, RespT> call, boolean primary) {
+                this.call = call;
+                this.primary = primary;
+            }
+
+            private void recordLatency() {
+                if (primary && !recorded && !cancelled) {
+                    recorded = true;
+                    window.record(System.nanoTime() - startedAt);
+                }
+            }
+
+            @Override
+            public void onHeaders(Metadata headers) {
+                synchronized (lock) {
+                    if (winner != this) {
+                        if (winner == null) {
+                            this.headers = headers;
+                        }
+                        return;
+                    }
+                }
+                listener.onHeaders(headers);
+            }
+
+            @Override
+            public void onMessage(RespT message) {
+                List<Attempt> losers = Collections.emptyList();
+                boolean committed = false;
+                synchronized (lock) {
+                    if (winner == null && !HedgingCall.this.closed) {
+                        losers = commit(this);
+                        committed = true;
+                    }
+                    if (winner != this) {
+                        return;
+                    }
+                }
+                if (committed) {
+                    won(losers);
+                }
+                listener.onMessage(message);
+            }
+
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                List<Attempt> losers = Collections.emptyList();
+                boolean committed = false;
+                synchronized (lock) {
+                    this.closed = true;
+                    recordLatency();
+                    if (HedgingCall.this.closed) {
+                        return;
+                    }
+                    if (winner == null && status.isOk()) {
+                        losers = commit(this);
+                        committed = true;
+                    }
+                    if (winner != null && winner != this) {
+                        return;
+                    }
+                    if (winner == null) {
+                        // a failed attempt settles the call once no other attempt can still answer;
+                        // a pending hedge is dropped, retrying failures is the retry policy's job
+                        if (hedgeTimer != null) {
+                            hedgeTimer.cancel(false);
+                            hedgeTimer = null;
+                        }
+                        if (attempts.stream().anyMatch(attempt -> !attempt.closed)) {
+                            return;
+                        }
+                    }
+                    HedgingCall.this.closed = true;
+                }
+                if (committed) {
+                    won(losers);
+                }
+                listener.onClose(status, trailers);
+            }
+
+            /**
+             * Runs outside {@code lock} once this attempt has won: cancels the losers and passes on
+             * the headers this attempt received before it won.
+             */
+            private void won(List<Attempt> losers) {
+                for (Attempt loser : losers) {
+                    loser.call.cancel("hedged call lost", null);
+                }
+                if (headers != null) {
+                    listener.onHeaders(headers);
+                }
+            }
+        }
+    }
+}
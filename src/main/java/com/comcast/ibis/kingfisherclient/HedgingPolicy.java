@@ -0,0 +1,185 @@
+package com.comcast.ibis.kingfisherclient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Hedging policy. When a read has not answered after the hedging delay, a second copy is
+ * sent; the first response wins and the other copy is cancelled. The delay is either fixed or a
+ * percentile of the method's recent latency, and hedges are limited to a fraction of calls so a
+ * slow server is not flooded with duplicates.
+ */
+public class HedgingPolicy {
+    private static final Set<String> DEFAULT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "GetDevices", "GetDevice", "QueryDevices", "CheckAlive", "Screenshot", "GetRedirectorType")));
+
+    private final Set<String> methods;
+    private final long delayNanos;
+    private final double percentile;
+    private final int minSamples;
+    private final double maxHedgeRatio;
+
+    private HedgingPolicy(HedgingPolicyBuilder builder) {
+        this.methods = Collections.unmodifiableSet(new HashSet<>(builder.methods));
+        this.delayNanos = builder.delayNanos;
+        this.percentile = builder.percentile;
+        this.minSamples = builder.minSamples;
+        this.maxHedgeRatio = builder.maxHedgeRatio;
+    }
+
+    /**
+     * New builder hedging policy builder.
+     *
+     * @return the hedging policy builder
+     */
+    public static HedgingPolicyBuilder newBuilder() { return new HedgingPolicyBuilder(); }
+
+    /**
+     * Gets methods.
+     *
+     * @return the hedged methods
+     */
+    public Set<String> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Gets delay.
+     *
+     * @param unit the unit
+     * @return the fixed delay, or the delay used until enough latency has been observed
+     */
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets percentile.
+     *
+     * @return the latency percentile used as delay, 0 for a fixed delay
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * Gets min samples.
+     *
+     * @return the latencies observed before the percentile replaces the fixed delay
+     */
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    /**
+     * Gets max hedge ratio.
+     *
+     * @return the largest fraction of calls that may be hedged
+     */
+    public double getMaxHedgeRatio() {
+        return maxHedgeRatio;
+    }
+
+    /**
+     * The type Hedging policy builder.
+     */
+    public static class HedgingPolicyBuilder {
+        private Set<String> methods = DEFAULT_METHODS;
+        private long delayNanos = TimeUnit.MILLISECONDS.toNanos(500);
+        private double percentile;
+        private int minSamples = 50;
+        private double maxHedgeRatio = 0.05;
+
+        /**
+         * Instantiates a new Hedging policy builder.
+         */
+        public HedgingPolicyBuilder() { }
+
+        /**
+         * Sets the hedged methods. Only methods that are safe to run twice should be hedged.
+         *
+         * @param methods the Kingfisher method names, e.g. "CheckAlive"
+         * @return the methods
+         */
+        public HedgingPolicyBuilder setMethods(String... methods) {
+            for (String method : methods) {
+                CallPolicies.checkMethod(method);
+            }
+            this.methods = new HashSet<>(Arrays.asList(methods));
+            return this;
+        }
+
+        /**
+         * Sets a fixed delay.
+         *
+         * @param delay the delay before the hedge is sent
+         * @param unit  the unit
+         * @return the delay
+         */
+        public HedgingPolicyBuilder setDelay(long delay, TimeUnit unit) {
+            if (delay < 0) {
+                throw new IllegalArgumentException("delay must not be negative");
+            }
+            this.delayNanos = unit.toNanos(delay);
+            this.percentile = 0;
+            return this;
+        }
+
+        /**
+         * Sets the delay to a percentile of the method's recent latency.
+         *
+         * @param percentile    the percentile, e.g. 95
+         * @param fallbackDelay the delay used until enough latency has been observed
+         * @param unit          the unit
+         * @return the delay percentile
+         */
+        public HedgingPolicyBuilder setDelayPercentile(double percentile, long fallbackDelay, TimeUnit unit) {
+            if (!(percentile > 0 && percentile < 100)) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            this.percentile = percentile;
+            this.delayNanos = unit.toNanos(fallbackDelay);
+            return this;
+        }
+
+        /**
+         * Sets min samples.
+         *
+         * @param minSamples the latencies observed before the percentile replaces the fallback delay
+         * @return the min samples
+         */
+        public HedgingPolicyBuilder setMinSamples(int minSamples) {
+            if (minSamples < 1) {
+                throw new IllegalArgumentException("min samples must be positive");
+            }
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * Sets max hedge ratio.
+         *
+         * @param maxHedgeRatio the largest fraction of calls that may be hedged, e.g. 0.05
+         * @return the max hedge ratio
+         */
+        public HedgingPolicyBuilder setMaxHedgeRatio(double maxHedgeRatio) {
+            if (!(maxHedgeRatio > 0 && maxHedgeRatio <= 1)) {
+                throw new IllegalArgumentException("max hedge ratio must be in (0, 1]");
+            }
+            this.maxHedgeRatio = maxHedgeRatio;
+            return this;
+        }
+
+        /**
+         * Build hedging policy.
+         *
+         * @return the hedging policy
+         */
+        public HedgingPolicy build() {
+            return new HedgingPolicy(this);
+        }
+    }
+}
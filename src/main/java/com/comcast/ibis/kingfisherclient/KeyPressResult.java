@@ -0,0 +1,122 @@
+package com.comcast.ibis.kingfisherclient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Key press result. Outcome and timing of a single key within a key sequence.
+ */
+public class KeyPressResult {
+    private final int index;
+    private final String key;
+    private final long sentAtNanos;
+    private final long latencyNanos;
+    private final Throwable error;
+    private final boolean sent;
+
+    private KeyPressResult(int index, String key, long sentAtNanos, long latencyNanos, Throwable error, boolean sent) {
+        this.index = index;
+        this.key = key;
+        this.sentAtNanos = sentAtNanos;
+        this.latencyNanos = latencyNanos;
+        this.error = error;
+        this.sent = sent;
+    }
+
+    /**
+     * Completed key press result.
+     *
+     * @param index        the index
+     * @param key          the key
+     * @param sentAtNanos  when the key was sent, relative to the start of the sequence
+     * @param latencyNanos the round trip of the key press
+     * @param error        the error, or null on success
+     * @return the key press result
+     */
+    static KeyPressResult completed(int index, String key, long sentAtNanos, long latencyNanos, Throwable error) {
+        return new KeyPressResult(index, key, sentAtNanos, latencyNanos, error, true);
+    }
+
+    /**
+     * Skipped key press result.
+     *
+     * @param index the index
+     * @param key   the key
+     * @param cause the failure that stopped the sequence
+     * @return the key press result
+     */
+    static KeyPressResult skipped(int index, String key, Throwable cause) {
+        return new KeyPressResult(index, key, -1, -1, cause, false);
+    }
+
+    /**
+     * Gets index.
+     *
+     * @return the position of the key in the sequence
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets key.
+     *
+     * @return the key
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Is sent boolean.
+     *
+     * @return false when the key was skipped after an earlier failure
+     */
+    public boolean isSent() {
+        return sent;
+    }
+
+    /**
+     * Is success boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isSuccess() {
+        return sent && error == null;
+    }
+
+    /**
+     * Gets error.
+     *
+     * @return the error, or null on success
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Gets sent at.
+     *
+     * @param unit the unit
+     * @return when the key was sent, relative to the start of the sequence, or -1 if it was skipped
+     */
+    public long getSentAt(TimeUnit unit) {
+        return sent ? unit.convert(sentAtNanos, TimeUnit.NANOSECONDS) : -1;
+    }
+
+    /**
+     * Gets latency.
+     *
+     * @param unit the unit
+     * @return the round trip of the key press, or -1 if it was skipped
+     */
+    public long getLatency(TimeUnit unit) {
+        return sent ? unit.convert(latencyNanos, TimeUnit.NANOSECONDS) : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyPressResult{index=" + index + ", key=" + key
+                + (!sent ? ", skipped" : error == null ? ", success" : ", error=" + error)
+                + (sent ? ", latencyMillis=" + getLatency(TimeUnit.MILLISECONDS) : "") + "}";
+    }
+}
@@ -0,0 +1,178 @@
+package com.comcast.ibis.kingfisherclient;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Key sequence. An ordered list of remote control keys, each with the delay to leave
+ * after the previous key, for {@link Device#pressKeys(KeySequence)}. With the default of one key in
+ * flight the delay is measured from the previous key's response; with more it is measured from
+ * when the previous key was sent.
+ */
+public class KeySequence {
+    private final List<String> keys;
+    private final List<Long> delaysNanos;
+    private final int maxInFlight;
+    private final boolean stopOnFailure;
+
+    private KeySequence(KeySequenceBuilder builder) {
+        this.keys = Collections.unmodifiableList(new ArrayList<>(builder.keys));
+        this.delaysNanos = Collections.unmodifiableList(new ArrayList<>(builder.delaysNanos));
+        this.maxInFlight = builder.maxInFlight;
+        this.stopOnFailure = builder.stopOnFailure;
+    }
+
+    /**
+     * Key sequence of keys sent back to back.
+     *
+     * @param keys the keys
+     * @return the key sequence
+     */
+    public static KeySequence of(List<String> keys) {
+        KeySequenceBuilder builder = newBuilder();
+        keys.forEach(builder::press);
+        return builder.build();
+    }
+
+    /**
+     * New builder key sequence builder.
+     *
+     * @return the key sequence builder
+     */
+    public static KeySequenceBuilder newBuilder() { return new KeySequenceBuilder(); }
+
+    /**
+     * Gets keys.
+     *
+     * @return the keys
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Gets delay nanos.
+     *
+     * @param index the index
+     * @return the delay before the key at the index is sent
+     */
+    long getDelayNanos(int index) {
+        return delaysNanos.get(index);
+    }
+
+    /**
+     * Gets max in flight.
+     *
+     * @return the max in flight
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Is stop on failure boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isStopOnFailure() {
+        return stopOnFailure;
+    }
+
+    /**
+     * The type Key sequence builder.
+     */
+    public static class KeySequenceBuilder {
+        private final List<String> keys = new ArrayList<>();
+        private final List<Long> delaysNanos = new ArrayList<>();
+        private long defaultDelayNanos;
+        private int maxInFlight = 1;
+        private boolean stopOnFailure = true;
+
+        /**
+         * Instantiates a new Key sequence builder.
+         */
+        public KeySequenceBuilder() { }
+
+        /**
+         * Sets the delay used by keys added without one.
+         *
+         * @param delay the delay
+         * @param unit  the unit
+         * @return the default delay
+         */
+        public KeySequenceBuilder setDefaultDelay(long delay, TimeUnit unit) {
+            this.defaultDelayNanos = unit.toNanos(delay);
+            return this;
+        }
+
+        /**
+         * Add a key sent after the default delay.
+         *
+         * @param key the key
+         * @return the key sequence builder
+         */
+        public KeySequenceBuilder press(String key) {
+            return press(key, defaultDelayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Add a key.
+         *
+         * @param key   the key
+         * @param delay the delay after the previous key
+         * @param unit  the unit
+         * @return the key sequence builder
+         */
+        public KeySequenceBuilder press(String key, long delay, TimeUnit unit) {
+            if (StringUtils.stripToNull(key) == null) {
+                throw new IllegalArgumentException("key  must be provided");
+            }
+            if (delay < 0) {
+                throw new IllegalArgumentException("delay must not be negative");
+            }
+            keys.add(key);
+            delaysNanos.add(unit.toNanos(delay));
+            return this;
+        }
+
+        /**
+         * Sets max in flight. By default each key waits for the previous key to be acknowledged.
+         * Allowing more sends keys without that wait, with each delay counted from when the
+         * previous key was sent, but then the device may receive them out of order.
+         *
+         * @param maxInFlight how many key presses may await their response at once
+         * @return the max in flight
+         */
+        public KeySequenceBuilder setMaxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("max in flight must be positive");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets stop on failure.
+         *
+         * @param stopOnFailure whether keys after a failed key are skipped
+         * @return the stop on failure
+         */
+        public KeySequenceBuilder setStopOnFailure(boolean stopOnFailure) {
+            this.stopOnFailure = stopOnFailure;
+            return this;
+        }
+
+        /**
+         * Build key sequence.
+         *
+         * @return the key sequence
+         */
+        public KeySequence build() {
+            return new KeySequence(this);
+        }
+    }
+}
@@ -1,28 +1,41 @@
 package com.comcast.ibis.kingfisherclient;
 
 import com.comcast.ibis.kingfisher.KingfisherGrpc;
+import com.comcast.ibis.kingfisher.AliveStatus;
 import com.comcast.ibis.kingfisher.DeviceData;
+import com.comcast.ibis.kingfisher.DeviceReservation;
+import com.comcast.ibis.kingfisher.GetDeviceRequest;
+import com.comcast.ibis.kingfisher.GetDeviceResponse;
 import com.comcast.ibis.kingfisher.GetDevicesRequest;
 import com.comcast.ibis.kingfisher.GetDevicesResponse;
+import com.comcast.ibis.kingfisher.QueryDevicesRequest;
+import com.comcast.ibis.kingfisherclient.common.Constants;
 import com.comcast.ibis.kingfisherclient.common.Utils;
 
-import io.grpc.ManagedChannelBuilder;
 import io.grpc.ClientCall;
-import io.grpc.ManagedChannel;
 import io.grpc.ClientInterceptor;
-import io.grpc.CallCredentials;
 import io.grpc.MethodDescriptor;
-import io.grpc.Metadata;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -30,36 +43,84 @@ import java.util.stream.Collectors;
  * The type Kingfisher client.
  */
 public class KingfisherClient {
-    private static final int REFRESH_THRESHOLD_SECONDS = 30;
-    private static final String AUTH_METADATA = "authorization";
+    private static final long DEFAULT_RENEW_MARGIN_SECONDS = 10;
+    private static final long DEFAULT_CURRENT_USER_TTL_MINUTES = 5;
+    private static final int DEFAULT_BATCH_PARALLELISM = 16;
+    private static final long DEFAULT_HEALTH_TTL_SECONDS = 30;
+    private static final long DEFAULT_STOP_RELEASE_SECONDS = 10;
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
 
-    private String token;
-    private KingfisherClientBuilder.TokenType tokenType;
+    private volatile String token;
+    private volatile KingfisherClientBuilder.TokenType tokenType;
     private String org;
     private String host;
+    private int batchParallelism;
     /**
      * The Released.
      */
     AtomicBoolean released = new AtomicBoolean(false);
 
-    private ManagedChannel channel;
+    private final TransportOptions transportOptions;
+    private final CallPolicies callPolicies;
+    private final HedgingPolicy hedgingPolicy;
+    private HedgingInterceptor hedging;
+    private final ClientMetrics metrics;
+    private ChannelPool channel;
     private final AuthorizationService auth;
+    private final TokenCredentials credentials;
     private KingfisherGrpc.KingfisherBlockingStub stub;
-    private Lock lock = new ReentrantLock();
-    private Map<String, String> secretManager;
-    private Set<Device> refreshDevices;
-    private Set<Device> syncRefreshDevices;
-    private Thread thread;
-
+    private KingfisherGrpc.KingfisherFutureStub futureStub;
+    private final ReservationRegistry reservations;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final LeaseRenewer renewer;
+    private final DeviceInventory inventory;
+    private final boolean serverFilter;
+    private final HealthMonitor health;
+    private final Predicate<DeviceData> healthSweepDevices;
+    private final long healthSweepIntervalNanos;
+    private final ReservationJournal journal;
+    private final KingfisherClientBuilder.JournalRecovery journalRecovery;
+    private final List<Device> recoveredDevices = new ArrayList<>();
+    private final boolean releaseOnStop;
+    private final long stopReleaseNanos;
+    private final Thread shutdownHook;
 
     private KingfisherClient(KingfisherClientBuilder builder) {
         this.token = builder.token;
         this.tokenType = builder.tokenType;
         this.host = builder.host;
-        this.auth = new AuthorizationService(token, host);
-        this.secretManager = new HashMap<>();
-        this.refreshDevices = new HashSet();
-        this.syncRefreshDevices = Collections.synchronizedSet(refreshDevices);
+        this.batchParallelism = builder.batchParallelism;
+        this.transportOptions = builder.transportOptions;
+        this.callPolicies = new CallPolicies(builder.defaultCallPolicy, builder.callPolicies);
+        this.hedgingPolicy = builder.hedgingPolicy;
+        this.metrics = builder.metricsEnabled ? new ClientMetrics() : null;
+        if (metrics != null) {
+            builder.metricsListeners.forEach(metrics::addListener);
+        }
+        this.auth = new AuthorizationService(token, builder.authorityHost, builder.currentUserTtlMillis);
+        this.credentials = new TokenCredentials(token, tokenType);
+        this.reservations = new ReservationRegistry();
+        this.ownsExecutor = builder.executor == null;
+        this.executor = ownsExecutor ? ClientExecutors.newExecutor() : builder.executor;
+        this.ownsScheduler = builder.scheduler == null;
+        this.scheduler = ownsScheduler ? ClientExecutors.newScheduler() : builder.scheduler;
+        this.renewer = new LeaseRenewer(reservations, scheduler, builder.leaseDurationSeconds, builder.renewMarginMillis);
+        this.inventory = new DeviceInventory(this::getDevicesAsync, builder.inventoryTtlMillis, builder.inventoryStaleMillis);
+        this.serverFilter = builder.serverFilter;
+        this.health = new HealthMonitor(scheduler, executor, builder.healthTtlNanos, batchParallelism);
+        this.healthSweepDevices = builder.healthSweepDevices;
+        this.healthSweepIntervalNanos = builder.healthSweepIntervalNanos;
+        this.journal = (builder.journalPath != null) ? new ReservationJournal(builder.journalPath) : null;
+        this.journalRecovery = builder.journalRecovery;
+        if (journal != null) {
+            reservations.setJournal(journal);
+        }
+        this.releaseOnStop = builder.releaseOnStop;
+        this.stopReleaseNanos = builder.stopReleaseNanos;
+        this.shutdownHook = builder.shutdownHook ? new Thread(this::stopQuietly, "kingfisher-shutdown") : null;
     }
 
     /**
@@ -72,46 +133,183 @@ public class KingfisherClient {
     }
 
     /**
-     * Start.
+     * Start. The reservation journal, if any, is opened first, so a journal in use by another
+     * client fails the start before any connection is made. If the start fails, the journal and
+     * the channels are closed again; {@link #stop()} still shuts down the executors.
      *
      * @throws IOException the io exception
      */
     public void start() throws IOException {
-        authorizeCurrentUser();
-        if(this.host.contains("localhost")) {
-            this.channel = ManagedChannelBuilder.forTarget(this.host)
-                    .usePlaintext()
-                    .build();
-        } else {
-            this.channel = ManagedChannelBuilder.forTarget(this.host)
-                    .useTransportSecurity()
-                    .build();
-        }
-
-        this.stub = KingfisherGrpc.newBlockingStub(channel).withInterceptors(new ClientInterceptor() {
-            @Override
-            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions, Channel channel) {
-                callOptions = callOptions.withCallCredentials(new CallCredentials() {
-                    @Override
-                    public void applyRequestMetadata(RequestInfo requestInfo, Executor executor, MetadataApplier metadataApplier) {
-                        Metadata.Key<String> apiKeys = Metadata.Key.of(AUTH_METADATA, Metadata.ASCII_STRING_MARSHALLER);
-                        Metadata header = new Metadata();
-                        if(tokenType.equals(KingfisherClientBuilder.TokenType.BEARER)) {
-                            header.put(apiKeys, "bearer " + token);
-                        } else {
-                            header.put(apiKeys, "apikey " + token);
-                        }
-                        metadataApplier.apply(header);
-                    }
+        Map<String, ReservationJournal.Entry> journaled = (journal != null) ? journal.open() : Collections.emptyMap();
+        try {
+            authorizeCurrentUser();
+            this.channel = ChannelPool.open(this.host, transportOptions, callPolicies, executor);
 
-                    @Override
-                    public void thisUsesUnstableApi() {
-                    }
-                });
-                return channel.newCall(methodDescriptor, callOptions);
+            this.stub = KingfisherGrpc.newBlockingStub(channel).withInterceptors(new ClientInterceptor() {
+                @Override
+                public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions, Channel channel) {
+                    return channel.newCall(methodDescriptor, callOptions.withCallCredentials(credentials));
+                }
+            });
+            if (hedgingPolicy != null) {
+                this.hedging = new HedgingInterceptor(hedgingPolicy, scheduler);
+                this.stub = stub.withInterceptors(hedging);
+            }
+            if (metrics != null) {
+                this.stub = stub.withInterceptors(new MetricsInterceptor(metrics));
+            }
+            this.futureStub = KingfisherGrpc.newFutureStub(stub.getChannel());
+            recover(journaled);
+        } catch (IOException | RuntimeException e) {
+            abortStart();
+            throw e;
+        }
+        if (healthSweepDevices != null) {
+            health.schedule(() -> searchDevices(healthSweepDevices), healthSweepIntervalNanos);
+        }
+        if (shutdownHook != null) {
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    /**
+     * Close what a failed start opened. Reservations recovered from the journal stay recorded in
+     * it for the next start.
+     */
+    private void abortStart() {
+        if (channel != null) {
+            try {
+                channel.shutdown(0, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel = null;
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) { }
+        }
+    }
+
+    /**
+     * Recover the reservations a previous client left in the journal, all devices at once. A
+     * resumed reservation is renewed with its old secret and held as if this client had made it; a
+     * released one is unlocked. Reservations whose secret no longer works are forgotten, while those
+     * that failed because the server could not be reached stay in the journal for the next start.
+     */
+    private void recover(Map<String, ReservationJournal.Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Device> devices = new ArrayList<>();
+        Set<String> missing = new HashSet<>(entries.keySet());
+        for (DeviceData data : getDevicesById(entries.keySet())) {
+            devices.add(device(data));
+            missing.remove(data.getReference().getDevice());
+        }
+        missing.forEach(journal::released);
+
+        List<BatchResult> results = runBatch(devices, batchParallelism, device -> {
+            String secret = entries.get(device.deviceRef.getDevice()).getSecret();
+            return (journalRecovery == KingfisherClientBuilder.JournalRecovery.RESUME)
+                    ? resumeAsync(device, secret).thenApply(reservation -> (Void) null)
+                    : device.unlockAsync(secret, DIRECT_EXECUTOR).thenApply(res -> (Void) null);
+        });
+        results.forEach(result -> {
+            Device device = result.getDevice();
+            String deviceId = device.deviceRef.getDevice();
+            if (result.isSuccess() && journalRecovery == KingfisherClientBuilder.JournalRecovery.RESUME) {
+                recoveredDevices.add(device);
+                return;
+            }
+            if (result.isSuccess() || !isTransient(result.getError())) {
+                journal.released(deviceId);
             }
         });
-        refreshDevices();
+    }
+
+    private CompletableFuture<DeviceReservation> resumeAsync(Device device, String secret) {
+        return device.lockAsync(secret, renewer.getLeaseDurationSeconds(), DIRECT_EXECUTOR)
+                .thenApply(reservation -> hold(device, reservation));
+    }
+
+    /**
+     * Refuse to spend a reservation on a device the cached health status says is dead.
+     */
+    private void checkNotKnownDead(Device device) {
+        if (health.isKnownDead(device.deviceRef.getDevice())) {
+            throw Status.FAILED_PRECONDITION
+                    .withDescription("device " + device.deviceRef.getDevice() + " is not live")
+                    .asRuntimeException();
+        }
+    }
+
+    /**
+     * Record a reservation the server granted and schedule its renewal. The device lock is only
+     * taken for the bookkeeping, never across a call to the server, so completion callbacks that
+     * get here do not wait on requests for other devices sharing the lock stripe.
+     */
+    private DeviceReservation hold(Device device, DeviceReservation reservation) {
+        Lock lock = reservations.lockFor(device.deviceRef.getDevice());
+        try {
+            lock.lock();
+            reservations.hold(device, reservation);
+            renewer.schedule(device, reservation);
+        } finally {
+            lock.unlock();
+        }
+        health.updateLocked(device.deviceRef.getDevice(), true);
+        return reservation;
+    }
+
+    /**
+     * Gets recovered devices.
+     *
+     * @return the devices whose reservations were resumed from the journal on start
+     */
+    public List<Device> getRecoveredDevices() {
+        return Collections.unmodifiableList(recoveredDevices);
+    }
+
+    /**
+     * Gets executor. Call callbacks and inventory refreshes run on it, and it suits device
+     * workflows too: the default runs each task on a virtual thread on Java 21 and later.
+     *
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets health monitor.
+     *
+     * @return the cache of device alive statuses, filled by checks and sweeps
+     */
+    public HealthMonitor getHealthMonitor() {
+        return health;
+    }
+
+    /**
+     * Gets metrics.
+     *
+     * @return the call metrics of this client, or null if metrics are disabled
+     */
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Replace the token used to authorize subsequent calls, e.g. when a bearer token is refreshed.
+     *
+     * @param token     the token
+     * @param tokenType the token type
+     */
+    public void setToken(String token, KingfisherClientBuilder.TokenType tokenType) {
+        this.token = token;
+        this.tokenType = tokenType;
+        credentials.update(token, tokenType);
     }
 
     /**
@@ -121,16 +319,116 @@ public class KingfisherClient {
      */
     List<DeviceData> getDevices() {
 
-        GetDevicesRequest req = GetDevicesRequest.newBuilder()
+        GetDevicesRequest req = getDevicesRequest();
+        GetDevicesResponse res = stub.getDevices(req);
+        List<DeviceData> result = res.getResultList();
+        return result;
+    }
+
+    /**
+     * Gets devices asynchronously.
+     *
+     * @return the devices future
+     */
+    CompletableFuture<List<DeviceData>> getDevicesAsync() {
+        return Utils.toCompletableFuture(futureStub.getDevices(getDevicesRequest()), GetDevicesResponse::getResultList, DIRECT_EXECUTOR);
+    }
+
+    private GetDevicesRequest getDevicesRequest() {
+        return GetDevicesRequest.newBuilder()
                 .setOrg(org)
                 .setIncludeRackData(true)
                 .setVerbose(true)
                 .build();
-        GetDevicesResponse res = stub.getDevices(req);
-        List<DeviceData> result = res.getResultList();
+    }
+
+    /**
+     * Gets a single device by id, without fetching the org inventory.
+     *
+     * @param deviceId the device id
+     * @return the device, or null when it does not exist
+     */
+    public Device getDevice(String deviceId) {
+        DeviceData data;
+        try {
+            GetDeviceResponse res = stub.getDevice(getDeviceRequest(deviceId));
+            data = res.hasResult() ? res.getResult() : null;
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() != Status.Code.NOT_FOUND) {
+                throw e;
+            }
+            data = null;
+        }
+        return (data == null) ? null : Utils.deviceList(Collections.singletonList(data), stub, reservations.secrets()).get(0);
+    }
+
+    /**
+     * Fetch devices by id concurrently. Ids that do not exist are skipped.
+     *
+     * @param deviceIds the device ids
+     * @return the devices
+     */
+    List<DeviceData> getDevicesById(Collection<String> deviceIds) {
+        List<CompletableFuture<DeviceData>> lookups = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            lookups.add(Utils.toCompletableFuture(futureStub.getDevice(getDeviceRequest(deviceId)),
+                    res -> res.hasResult() ? res.getResult() : null, DIRECT_EXECUTOR)
+                    .exceptionally(e -> {
+                        if (Status.fromThrowable(e).getCode() == Status.Code.NOT_FOUND) {
+                            return null;
+                        }
+                        throw (e instanceof CompletionException) ? (CompletionException) e : new CompletionException(e);
+                    }));
+        }
+        List<DeviceData> result = new ArrayList<>();
+        for (CompletableFuture<DeviceData> lookup : lookups) {
+            DeviceData data;
+            try {
+                data = lookup.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+            if (data != null) {
+                result.add(data);
+            }
+        }
         return result;
     }
 
+    private GetDeviceRequest getDeviceRequest(String deviceId) {
+        return GetDeviceRequest.newBuilder()
+                .setOrg(org)
+                .setDeviceId(deviceId)
+                .setIncludeRackData(true)
+                .build();
+    }
+
+    /**
+     * Query devices matching a server side filter.
+     *
+     * @param filter the filter
+     * @return the devices
+     */
+    List<DeviceData> queryDevices(Map<String, String> filter) {
+        QueryDevicesRequest req = QueryDevicesRequest.newBuilder()
+                .setOrg(org)
+                .setIncludeRackData(true)
+                .setVerbose(true)
+                .putAllFilter(filter)
+                .build();
+        return stub.queryDevices(req).getResultList();
+    }
+
+    /**
+     * Drop the cached device inventory, so the next search fetches the devices from the server.
+     */
+    public void invalidateDevices() {
+        inventory.invalidate();
+    }
+
     /**
      * Private devices list.
      *
@@ -141,7 +439,7 @@ public class KingfisherClient {
         String currentUser = auth.getCurrentUser().getId();
         List<DeviceData> result = new ArrayList();
 
-        getDevices().forEach(d -> {
+        inventory.get().forEach(d -> {
             if(d.getMetadata().getOwner().getUser().getUser().equals(currentUser)) {
                 result.add(d);
             }
@@ -156,26 +454,73 @@ public class KingfisherClient {
      * @return the list
      */
     public List<Device> searchDevices(Predicate<DeviceData> predicate) {
-        return Utils.deviceList(this.getDevices().stream().filter(predicate).collect(Collectors.toList()), stub, secretManager);
+        return Utils.deviceList(select(predicate), stub, reservations.secrets());
     }
 
     /**
-     * Reserve.
+     * Devices matching a predicate. A cached inventory answers from its indexes; otherwise lookups
+     * by device id become point requests and, when server filtering is enabled, the exact matches of
+     * any other {@link SearchPredicate} narrow the query on the server. The full predicate is still
+     * evaluated on the result, which also covers servers that ignore a filter key. A server that
+     * rejects the filter is answered from the full device list instead.
+     */
+    List<DeviceData> select(Predicate<DeviceData> predicate) {
+        if (!inventory.isEnabled()) {
+            Set<String> deviceIds = SearchPredicate.deviceIds(predicate);
+            if (deviceIds != null) {
+                return getDevicesById(deviceIds).stream().filter(predicate).collect(Collectors.toList());
+            }
+            Map<String, String> filter = serverFilter ? SearchPredicate.serverFilter(predicate) : Collections.emptyMap();
+            if (!filter.isEmpty()) {
+                try {
+                    return queryDevices(filter).stream().filter(predicate).collect(Collectors.toList());
+                } catch (StatusRuntimeException e) {
+                    Status.Code code = e.getStatus().getCode();
+                    if (code != Status.Code.INVALID_ARGUMENT && code != Status.Code.UNIMPLEMENTED) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        return inventory.select(predicate);
+    }
+
+    /**
+     * Device handle for an inventory entry.
+     *
+     * @param data the device data
+     * @return the device
+     */
+    Device device(DeviceData data) {
+        return Utils.deviceList(Collections.singletonList(data), stub, reservations.secrets()).get(0);
+    }
+
+    /**
+     * Whether this client holds a reservation on a device.
+     *
+     * @param deviceId the device id
+     * @return true if the device is reserved by this client
+     */
+    boolean isReserved(String deviceId) {
+        return reservations.secret(deviceId) != null;
+    }
+
+    /**
+     * Reserve. A device the health monitor recently found dead is not sent a lock request.
      *
      * @param device the device
      */
     public void reserve(Device device) {
         try {
-            this.lock.lock();
-            String secret = (secretManager.containsKey(device.deviceRef.getDevice())) ?  device.lock(secretManager.get(device.deviceRef.getDevice())) : device.lock();
-            secretManager.put(device.deviceRef.getDevice(), secret);
-            syncRefreshDevices.add(device);
-
+            String current = reservations.secret(device.deviceRef.getDevice());
+            if (current == null) {
+                checkNotKnownDead(device);
+            }
+            int duration = renewer.getLeaseDurationSeconds();
+            DeviceReservation reservation = (current != null) ?  device.lock(current, duration) : device.lock(duration);
+            hold(device, reservation);
         } catch (Exception e) {
-            throw new Error("unable to reserve devices");
-        }
-        finally {
-            this.lock.unlock();
+            throw new Error("unable to reserve devices", e);
         }
     }
 
@@ -189,83 +534,296 @@ public class KingfisherClient {
             try {
                 reserve(device);
             } catch (Exception e) {
-                throw new Error("unable to reserve devices");
+                throw new Error("unable to reserve devices", e);
             }
 
         });
     }
 
-    private void refreshDevices() {
-        Runnable runnable = () -> {
-            while (!released.get()) {
-                if(!syncRefreshDevices.isEmpty()) {
-                    syncRefreshDevices.forEach((device) -> {
-                        try {
-                            reserve(device);
-                        } catch (Exception e) {
-                            throw new Error("unable to refresh devices");
-                        }
-
-                    });
-                }
+    /**
+     * Reserve all devices concurrently, using the configured batch parallelism.
+     *
+     * @param devices the devices
+     * @return the outcome of each device, in list order, one per element even if a device is listed twice
+     */
+    public List<BatchResult> reserveAll(List<Device> devices) {
+        return reserveAll(devices, batchParallelism);
+    }
 
-                try {
-                    Thread.sleep(TimeUnit.SECONDS.toMillis(REFRESH_THRESHOLD_SECONDS));
-                } catch (InterruptedException e) { }
+    /**
+     * Reserve all devices concurrently. A failing device does not abort the rest of the batch, and
+     * devices the health monitor recently found dead fail without a lock request.
+     *
+     * @param devices     the devices
+     * @param parallelism the maximum number of lock requests in flight
+     * @return the outcome of each device, in list order, one per element even if a device is listed twice
+     */
+    public List<BatchResult> reserveAll(List<Device> devices, int parallelism) {
+        return runBatch(devices, parallelism, this::reserveAsync);
+    }
 
-            }
-        };
-        thread = new Thread(runnable);
-        thread.start();
+    private CompletableFuture<DeviceReservation> reserveAsync(Device device) {
+        String secret = reservations.secret(device.deviceRef.getDevice());
+        if (secret == null) {
+            checkNotKnownDead(device);
+        }
+        return device.lockAsync(secret, renewer.getLeaseDurationSeconds(), DIRECT_EXECUTOR)
+                .thenApply(reservation -> hold(device, reservation));
     }
 
     /**
-     * Release.
+     * Release. Devices this client does not hold are ignored. The lease is no longer renewed even
+     * when the unlock fails; after an unreachable server or a deadline the device is still held, so
+     * the release can be retried, and otherwise it is forgotten.
      *
      * @param device the device
+     * @throws StatusRuntimeException when the device could not be unlocked
      */
     public void release(Device device) {
         try {
-            this.lock.lock();
-            if(device.checkAlive().getResult().getLocked()) {
-                device.unlock(secretManager.get(device.deviceRef.getDevice()));
-                secretManager.remove(device.deviceRef.getDevice());
-                syncRefreshDevices.remove(device);
+            releaseAsync(device).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-        } catch (Exception e) {
-
-        }
-        finally {
-            this.lock.unlock();
+            throw e;
         }
     }
 
     /**
-     * Release.
+     * Release, all devices concurrently using the configured batch parallelism. A failing device
+     * does not stop the others from being released.
      *
      * @param devices the devices
+     * @throws BatchException when some devices could not be unlocked, with the outcome of each
      */
     public void release(List<Device> devices) {
-        devices.forEach((device) -> {
+        List<BatchResult> results = releaseAll(devices);
+        if (results.stream().anyMatch(result -> !result.isSuccess())) {
+            throw new BatchException("unable to release devices", results);
+        }
+    }
+
+    /**
+     * Release all devices concurrently, using the configured batch parallelism.
+     *
+     * @param devices the devices
+     * @return the outcome of each device, in list order, one per element even if a device is listed twice
+     */
+    public List<BatchResult> releaseAll(List<Device> devices) {
+        return releaseAll(devices, batchParallelism);
+    }
+
+    /**
+     * Release all devices concurrently. A failing device does not abort the rest of the batch.
+     *
+     * @param devices     the devices
+     * @param parallelism the maximum number of devices being released at once
+     * @return the outcome of each device, in list order, one per element even if a device is listed twice
+     */
+    public List<BatchResult> releaseAll(List<Device> devices, int parallelism) {
+        return runBatch(devices, parallelism, this::releaseAsync);
+    }
+
+    private CompletableFuture<Void> releaseAsync(Device device) {
+        Lock lock = reservations.lockFor(device.deviceRef.getDevice());
+        String secret = reservations.secret(device.deviceRef.getDevice());
+        if (secret == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        AliveStatus cached = health.getStatus(device.deviceRef.getDevice());
+        CompletableFuture<Boolean> locked = (cached == null || cached.getLocked())
+                ? CompletableFuture.completedFuture(true)
+                : health.check(device).thenApply(AliveStatus::getLocked);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        locked.thenCompose(isLocked -> isLocked
+                ? unlockAsync(device, secret)
+                : CompletableFuture.<Void>completedFuture(null)
+        ).whenComplete((v, e) -> {
+            Throwable error = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
             try {
-                release(device);
-            } catch (Exception e) { }
+                lock.lock();
+                // the caller gave the device back, so its lease is left to run out either way
+                renewer.cancel(device.deviceRef.getDevice());
+                if (error == null) {
+                    String renewed = reservations.secret(device.deviceRef.getDevice());
+                    if (renewed != null && !renewed.equals(secret)) {
+                        // a renewal that reached the server after the unlock locked the device again
+                        device.unlockAsync(renewed, DIRECT_EXECUTOR);
+                    }
+                    reservations.drop(device);
+                } else if (!isTransient(error) && secret.equals(reservations.secret(device.deviceRef.getDevice()))) {
+                    // the secret no longer unlocks the device, retrying would not either
+                    reservations.drop(device);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (error == null) {
+                health.updateLocked(device.deviceRef.getDevice(), false);
+                result.complete(null);
+            } else {
+                result.completeExceptionally(error);
+            }
         });
+        return result;
     }
 
+    private static boolean isTransient(Throwable error) {
+        Status.Code code = Status.fromThrowable(error).getCode();
+        return code == Status.Code.UNAVAILABLE || code == Status.Code.DEADLINE_EXCEEDED;
+    }
 
     /**
-     * Stop.
+     * Unlock a device, falling back to BeaconUnlockDevice when UnlockDevice is unavailable or not
+     * served.
+     */
+    private CompletableFuture<Void> unlockAsync(Device device, String secret) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        device.unlockAsync(secret, DIRECT_EXECUTOR).whenComplete((res, e) -> {
+            if (e == null) {
+                result.complete(null);
+                return;
+            }
+            Status.Code code = Status.fromThrowable(e).getCode();
+            if (code != Status.Code.UNAVAILABLE && code != Status.Code.UNIMPLEMENTED) {
+                result.completeExceptionally(e);
+                return;
+            }
+            device.beaconUnlockAsync(secret, credentials.authorization(), DIRECT_EXECUTOR).whenComplete((beacon, fallback) -> {
+                if (fallback == null) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(fallback);
+                }
+            });
+        });
+        return result;
+    }
+
+    private <T> List<BatchResult> runBatch(List<Device> devices, int parallelism, Function<Device, CompletableFuture<T>> operation) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<T>> pending = new ArrayList<>(devices.size());
+        for (Device device : devices) {
+            permits.acquireUninterruptibly();
+            CompletableFuture<T> future;
+            try {
+                future = operation.apply(device);
+            } catch (Exception e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((res, e) -> permits.release());
+            pending.add(future);
+        }
+
+        // by position, so a device listed twice gets a result for each entry
+        List<BatchResult> results = new ArrayList<>(devices.size());
+        for (int i = 0; i < devices.size(); i++) {
+            Device device = devices.get(i);
+            try {
+                pending.get(i).join();
+                results.add(BatchResult.success(device));
+            } catch (CompletionException e) {
+                results.add(BatchResult.failure(device, e.getCause()));
+            } catch (CancellationException e) {
+                results.add(BatchResult.failure(device, e));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Stop. Unless disabled, every device still held is released first, all of them concurrently
+     * and within the stop timeout. Devices not released in time stay locked until their leases
+     * run out, or until a client started with the same reservation journal releases them. Stopping
+     * twice has no effect.
      *
      * @throws InterruptedException the interrupted exception
      */
     public void stop() throws InterruptedException {
-        this.released.getAndSet(true);
-        channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        if (this.released.getAndSet(true)) {
+            return;
+        }
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // already shutting down
+            }
+        }
+        health.shutdown();
+        renewer.shutdown();
+        try {
+            if (releaseOnStop && channel != null) {
+                releaseHeld();
+            }
+        } finally {
+            if (ownsScheduler) {
+                scheduler.shutdownNow();
+            }
+            if (channel != null) {
+                channel.shutdown(5, TimeUnit.SECONDS);
+            }
+            if (ownsExecutor) {
+                ((ExecutorService) executor).shutdown();
+            }
+            try {
+                auth.close();
+            } catch (IOException e) { }
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) { }
+            }
+        }
+    }
+
+    private void stopQuietly() {
+        try {
+            stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // the JVM is going down regardless
+        }
+    }
+
+    /**
+     * Release every held device, at most the batch parallelism at a time, giving up on the rest
+     * when the stop timeout runs out.
+     */
+    private void releaseHeld() throws InterruptedException {
+        List<Device> held = new ArrayList<>(reservations.heldDevices());
+        if (held.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + stopReleaseNanos;
+        Semaphore permits = new Semaphore(batchParallelism);
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (Device device : held) {
+            if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                break;
+            }
+            CompletableFuture<Void> future;
+            try {
+                future = releaseAsync(device);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((res, e) -> permits.release());
+            pending.add(future);
+        }
         try {
-            thread.interrupt();
-            thread.join();
-        } catch (InterruptedException e) { }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // failed devices stay locked until their leases run out
+        }
     }
 
     /**
@@ -282,9 +840,33 @@ public class KingfisherClient {
      */
     public static class KingfisherClientBuilder {
         private String host;
+        private String authorityHost = Constants.AUTHORITY_SERVICE;
         private String token;
 
         private  TokenType tokenType;
+        private int batchParallelism = DEFAULT_BATCH_PARALLELISM;
+        private int leaseDurationSeconds;
+        private long renewMarginMillis = TimeUnit.SECONDS.toMillis(DEFAULT_RENEW_MARGIN_SECONDS);
+        private long inventoryTtlMillis;
+        private long inventoryStaleMillis;
+        private boolean serverFilter;
+        private long currentUserTtlMillis = TimeUnit.MINUTES.toMillis(DEFAULT_CURRENT_USER_TTL_MINUTES);
+        private TransportOptions transportOptions = TransportOptions.defaults();
+        private CallPolicy defaultCallPolicy = CallPolicies.defaultPolicy();
+        private final Map<String, CallPolicy> callPolicies = CallPolicies.defaultMethodPolicies();
+        private HedgingPolicy hedgingPolicy;
+        private boolean metricsEnabled = true;
+        private final List<MetricsListener> metricsListeners = new ArrayList<>();
+        private Executor executor;
+        private ScheduledExecutorService scheduler;
+        private long healthTtlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_HEALTH_TTL_SECONDS);
+        private Predicate<DeviceData> healthSweepDevices;
+        private long healthSweepIntervalNanos;
+        private Path journalPath;
+        private JournalRecovery journalRecovery;
+        private boolean releaseOnStop = true;
+        private long stopReleaseNanos = TimeUnit.SECONDS.toNanos(DEFAULT_STOP_RELEASE_SECONDS);
+        private boolean shutdownHook;
 
         /**
          * The enum Token type.
@@ -301,6 +883,22 @@ public class KingfisherClient {
             APIKEY;
         }
 
+        /**
+         * The enum Journal recovery, what a starting client does with the reservations it finds
+         * in its journal.
+         */
+        public enum JournalRecovery
+        {
+            /**
+             * Renew the reservations and keep holding the devices.
+             */
+            RESUME,
+            /**
+             * Unlock the devices so they are free again.
+             */
+            RELEASE;
+        }
+
         /**
          * Instantiates a new Kingfisher client builder.
          */
@@ -317,6 +915,17 @@ public class KingfisherClient {
             return this;
         }
 
+        /**
+         * Sets the url of the authority service the current user is looked up from.
+         *
+         * @param authorityHost the authority service url, e.g. "http://localhost:8081"
+         * @return the authority host
+         */
+        public KingfisherClientBuilder setAuthorityHost(String authorityHost) {
+            this.authorityHost = authorityHost;
+            return this;
+        }
+
 
         /**
          * Sets token.
@@ -331,6 +940,299 @@ public class KingfisherClient {
             return this;
         }
 
+        /**
+         * Sets the maximum number of concurrent requests issued by batch operations.
+         *
+         * @param batchParallelism the batch parallelism
+         * @return the batch parallelism
+         */
+        public KingfisherClientBuilder setBatchParallelism(int batchParallelism) {
+            if (batchParallelism < 1) {
+                throw new IllegalArgumentException("batch parallelism must be positive");
+            }
+            this.batchParallelism = batchParallelism;
+            return this;
+        }
+
+        /**
+         * Sets the lease duration requested when locking devices. By default the server decides.
+         *
+         * @param duration the duration
+         * @param unit     the unit
+         * @return the lease duration
+         */
+        public KingfisherClientBuilder setLeaseDuration(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("lease duration must not be negative");
+            }
+            this.leaseDurationSeconds = (int) Math.min(Integer.MAX_VALUE, unit.toSeconds(duration));
+            return this;
+        }
+
+        /**
+         * Sets how long before its expiry a lease is renewed. Renewals are spread out with jitter
+         * within half of this margin.
+         *
+         * @param margin the margin
+         * @param unit   the unit
+         * @return the renewal margin
+         */
+        public KingfisherClientBuilder setRenewalMargin(long margin, TimeUnit unit) {
+            if (margin < 0) {
+                throw new IllegalArgumentException("renewal margin must not be negative");
+            }
+            this.renewMarginMillis = unit.toMillis(margin);
+            return this;
+        }
+
+        /**
+         * Sets how long the device inventory used by searches is cached. By default every search
+         * fetches the devices from the server.
+         *
+         * @param ttl  the time to live
+         * @param unit the unit
+         * @return the inventory ttl
+         */
+        public KingfisherClientBuilder setInventoryTtl(long ttl, TimeUnit unit) {
+            if (ttl < 0) {
+                throw new IllegalArgumentException("inventory ttl must not be negative");
+            }
+            this.inventoryTtlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * Sets how long an expired inventory may still be served while it is refreshed in the
+         * background.
+         *
+         * @param stale the stale period
+         * @param unit  the unit
+         * @return the inventory stale while revalidate
+         */
+        public KingfisherClientBuilder setInventoryStaleWhileRevalidate(long stale, TimeUnit unit) {
+            if (stale < 0) {
+                throw new IllegalArgumentException("inventory stale period must not be negative");
+            }
+            this.inventoryStaleMillis = unit.toMillis(stale);
+            return this;
+        }
+
+        /**
+         * Sets whether searches without a cached inventory send the exact matches of a
+         * {@link SearchPredicate} to the server as a QueryDevices filter, instead of fetching every
+         * device. Only enable it against servers that understand the filter keys of
+         * {@link SearchPredicate.Field}; a server that rejects them is answered from GetDevices,
+         * but one that reads them differently may return too few devices. Off by default.
+         *
+         * @param serverFilter whether searches are filtered on the server
+         * @return the server filter
+         */
+        public KingfisherClientBuilder setServerFilter(boolean serverFilter) {
+            this.serverFilter = serverFilter;
+            return this;
+        }
+
+        /**
+         * Sets how long the current user resolved from the authority service is cached.
+         *
+         * @param ttl  the time to live
+         * @param unit the unit
+         * @return the current user ttl
+         */
+        public KingfisherClientBuilder setCurrentUserTtl(long ttl, TimeUnit unit) {
+            if (ttl < 0) {
+                throw new IllegalArgumentException("current user ttl must not be negative");
+            }
+            this.currentUserTtlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * Sets transport options: channel pooling, keepalive, flow control and transport security.
+         *
+         * @param transportOptions the transport options
+         * @return the transport options
+         */
+        public KingfisherClientBuilder setTransportOptions(TransportOptions transportOptions) {
+            this.transportOptions = transportOptions;
+            return this;
+        }
+
+        /**
+         * Sets the call policy of methods without a policy of their own. Idempotent reads such as
+         * CheckAlive, GetDevices and Screenshot have their own policy, which retries unavailable
+         * servers.
+         *
+         * @param policy the policy
+         * @return the default call policy
+         */
+        public KingfisherClientBuilder setDefaultCallPolicy(CallPolicy policy) {
+            this.defaultCallPolicy = Objects.requireNonNull(policy, "policy");
+            return this;
+        }
+
+        /**
+         * Sets the call policy of a method.
+         *
+         * @param method the Kingfisher method name, e.g. "Screenshot"
+         * @param policy the policy
+         * @return the call policy
+         */
+        public KingfisherClientBuilder setCallPolicy(String method, CallPolicy policy) {
+            CallPolicies.checkMethod(method);
+            this.callPolicies.put(method, Objects.requireNonNull(policy, "policy"));
+            return this;
+        }
+
+        /**
+         * Sets the hedging policy of idempotent reads. Hedging is off unless a policy is set.
+         *
+         * @param hedgingPolicy the hedging policy, or null to disable hedging
+         * @return the hedging policy
+         */
+        public KingfisherClientBuilder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * Sets metrics enabled. Call metrics are recorded unless disabled.
+         *
+         * @param metricsEnabled whether call metrics are recorded
+         * @return the metrics enabled
+         */
+        public KingfisherClientBuilder setMetricsEnabled(boolean metricsEnabled) {
+            this.metricsEnabled = metricsEnabled;
+            return this;
+        }
+
+        /**
+         * Add a listener that receives every completed call.
+         *
+         * @param listener the listener
+         * @return the kingfisher client builder
+         */
+        public KingfisherClientBuilder addMetricsListener(MetricsListener listener) {
+            this.metricsListeners.add(Objects.requireNonNull(listener, "listener"));
+            return this;
+        }
+
+        /**
+         * Sets executor. Call callbacks, inventory refreshes and the continuations of batch work
+         * run on it, and it is handed out by {@link KingfisherClient#getExecutor()}. By default
+         * the client creates one that uses virtual threads on Java 21 and later. An executor set
+         * here is not shut down by {@link KingfisherClient#stop()}.
+         *
+         * @param executor the executor
+         * @return the kingfisher client builder
+         */
+        public KingfisherClientBuilder setExecutor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor, "executor");
+            return this;
+        }
+
+        /**
+         * Sets scheduled executor for lease renewals and hedged calls. By default the client
+         * creates a single daemon thread. A scheduler set here is not shut down by
+         * {@link KingfisherClient#stop()}, which only cancels the renewals it scheduled.
+         *
+         * @param scheduler the scheduler
+         * @return the kingfisher client builder
+         */
+        public KingfisherClientBuilder setScheduledExecutor(ScheduledExecutorService scheduler) {
+            this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+            return this;
+        }
+
+        /**
+         * Sets health ttl, how long a checked device's alive status is trusted.
+         *
+         * @param ttl  the ttl
+         * @param unit the unit
+         * @return the health ttl
+         */
+        public KingfisherClientBuilder setHealthTtl(long ttl, TimeUnit unit) {
+            if (ttl <= 0) {
+                throw new IllegalArgumentException("health ttl must be positive");
+            }
+            this.healthTtlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * Sweep the health of matching devices on a schedule once the client is started. Use a
+         * ttl longer than the interval so statuses stay cached between sweeps.
+         *
+         * @param devices  the devices to check, e.g. a rack
+         * @param interval the delay between sweeps
+         * @param unit     the unit
+         * @return the health sweep
+         */
+        public KingfisherClientBuilder setHealthSweep(Predicate<DeviceData> devices, long interval, TimeUnit unit) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("health sweep interval must be positive");
+            }
+            this.healthSweepDevices = Objects.requireNonNull(devices, "devices");
+            this.healthSweepIntervalNanos = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * Sets reservation journal. Reservations are recorded in a memory-mapped file as they are
+         * made, renewed and released, so when a client crashes, the next one started with the same
+         * journal resumes or releases its reservations in {@link KingfisherClient#start()} instead
+         * of leaving the devices locked until their leases run out. A journal is used by one client
+         * at a time.
+         *
+         * @param path     the journal file
+         * @param recovery what to do with reservations left in the journal
+         * @return the reservation journal
+         */
+        public KingfisherClientBuilder setReservationJournal(Path path, JournalRecovery recovery) {
+            this.journalPath = Objects.requireNonNull(path, "path");
+            this.journalRecovery = Objects.requireNonNull(recovery, "recovery");
+            return this;
+        }
+
+        /**
+         * Sets release on stop. By default {@link KingfisherClient#stop()} releases every device
+         * the client still holds; disable it to leave them reserved, e.g. for a client started
+         * later with the same reservation journal to resume.
+         *
+         * @param releaseOnStop whether stop releases held devices
+         * @return the release on stop
+         */
+        public KingfisherClientBuilder setReleaseOnStop(boolean releaseOnStop) {
+            this.releaseOnStop = releaseOnStop;
+            return this;
+        }
+
+        /**
+         * Sets stop timeout, how long stop may spend releasing held devices.
+         *
+         * @param timeout the timeout
+         * @param unit    the unit
+         * @return the stop timeout
+         */
+        public KingfisherClientBuilder setStopTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("stop timeout must not be negative");
+            }
+            this.stopReleaseNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Sets shutdown hook. When enabled, a started client registers a JVM shutdown hook that
+         * stops it, so devices are released even if the run is aborted before stop is called.
+         *
+         * @param shutdownHook whether to stop the client when the JVM shuts down
+         * @return the shutdown hook
+         */
+        public KingfisherClientBuilder setShutdownHook(boolean shutdownHook) {
+            this.shutdownHook = shutdownHook;
+            return this;
+        }
 
         /**
          * Build kingfisher client.
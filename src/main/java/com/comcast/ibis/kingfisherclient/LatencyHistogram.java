@@ -0,0 +1,73 @@
+package com.comcast.ibis.kingfisherclient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The type Latency histogram. Counts latencies in microseconds into log-linear buckets: every
+ * power of two is split into 32 equal buckets, so any recorded value is known to within about 3%
+ * while the whole range up to half an hour fits in under a thousand counters. Recording is a
+ * single atomic increment.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_MICROS = (1L << 31) - 1;
+    private static final int BUCKETS = index(MAX_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    void record(long nanos) {
+        counts.incrementAndGet(index(Math.min(MAX_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)))));
+    }
+
+    /**
+     * Copy the bucket counts.
+     *
+     * @return the counts
+     */
+    long[] counts() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * The lowest value of a bucket.
+     *
+     * @param index the index
+     * @return the value in microseconds
+     */
+    static long lowerBound(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * The highest value of a bucket.
+     *
+     * @param index the index
+     * @return the value in microseconds
+     */
+    static long upperBound(int index) {
+        return (index + 1 < BUCKETS) ? lowerBound(index + 1) - 1 : MAX_MICROS;
+    }
+
+    private static int index(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (micros >> shift);
+    }
+}
@@ -0,0 +1,172 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceReservation;
+import com.google.protobuf.Timestamp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * The type Lease renewer. Renews each held reservation shortly before the expiry reported by the
+ * server instead of re-locking every device on a fixed period. Renewals are sent asynchronously, so
+ * a single scheduler thread can keep any number of leases alive.
+ */
+class LeaseRenewer {
+    private static final long FALLBACK_RENEW_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MIN_RETRY_MILLIS = 500;
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private final ReservationRegistry reservations;
+    private final ScheduledExecutorService scheduler;
+    private final int leaseDurationSeconds;
+    private final long renewMarginMillis;
+    private final Map<String, ScheduledFuture<?>> renewals = new ConcurrentHashMap<>();
+    private volatile boolean shutdown;
+
+    /**
+     * Instantiates a new Lease renewer.
+     *
+     * @param reservations         the reservations
+     * @param scheduler            the scheduler
+     * @param leaseDurationSeconds the requested lease duration, or 0 for the server default
+     * @param renewMarginMillis    how long before expiry a lease is renewed
+     */
+    LeaseRenewer(ReservationRegistry reservations, ScheduledExecutorService scheduler, int leaseDurationSeconds, long renewMarginMillis) {
+        this.reservations = reservations;
+        this.scheduler = scheduler;
+        this.leaseDurationSeconds = leaseDurationSeconds;
+        this.renewMarginMillis = renewMarginMillis;
+    }
+
+    /**
+     * Gets lease duration seconds.
+     *
+     * @return the lease duration seconds
+     */
+    int getLeaseDurationSeconds() {
+        return leaseDurationSeconds;
+    }
+
+    /**
+     * Schedule the renewal of a freshly locked or renewed reservation, replacing any pending one.
+     * Callers hold the device lock.
+     *
+     * @param device      the device
+     * @param reservation the reservation returned by the server
+     */
+    void schedule(Device device, DeviceReservation reservation) {
+        long expiresAt = expiresAtMillis(reservation);
+        long delay;
+        if (expiresAt > 0) {
+            long remaining = expiresAt - System.currentTimeMillis();
+            long margin = Math.min(renewMarginMillis, remaining / 2);
+            long jitter = margin > 1 ? ThreadLocalRandom.current().nextLong(margin / 2 + 1) : 0;
+            delay = Math.max(0, remaining - margin - jitter);
+        } else {
+            delay = FALLBACK_RENEW_MILLIS;
+        }
+        schedule(device, expiresAt, delay);
+    }
+
+    /**
+     * Cancel the pending renewal of a device. Callers hold the device lock.
+     *
+     * @param deviceId the device id
+     */
+    void cancel(String deviceId) {
+        ScheduledFuture<?> pending = renewals.remove(deviceId);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    /**
+     * Cancel every pending renewal.
+     */
+    void shutdown() {
+        shutdown = true;
+        renewals.values().forEach(pending -> pending.cancel(false));
+        renewals.clear();
+    }
+
+    private void schedule(Device device, long expiresAt, long delayMillis) {
+        // renewals and retries both come through here, possibly from a renewal that completes
+        // after the client stopped
+        if (shutdown) {
+            return;
+        }
+        String deviceId = device.deviceRef.getDevice();
+        ScheduledFuture<?> next;
+        try {
+            next = scheduler.schedule(() -> renew(device, expiresAt), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the scheduler was shut down after the check above
+            return;
+        }
+        ScheduledFuture<?> previous = renewals.put(deviceId, next);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    private void renew(Device device, long expiresAt) {
+        String deviceId = device.deviceRef.getDevice();
+        String secret = reservations.secret(deviceId);
+        if (secret == null || shutdown) {
+            return;
+        }
+        device.lockAsync(secret, leaseDurationSeconds, DIRECT_EXECUTOR).whenComplete((reservation, e) -> {
+            Lock lock = reservations.lockFor(deviceId);
+            try {
+                lock.lock();
+                String current = reservations.secret(deviceId);
+                if (!secret.equals(current)) {
+                    // released or re-reserved while the renewal was in flight; a renewal that
+                    // reached the server after the release locked the device again, possibly
+                    // under a fresh secret
+                    if (e == null && current == null) {
+                        String granted = reservation.getReservationSecret();
+                        device.unlockAsync(granted.isEmpty() ? secret : granted, DIRECT_EXECUTOR);
+                    }
+                    return;
+                }
+                if (e == null) {
+                    reservations.hold(device, reservation);
+                    schedule(device, reservation);
+                    return;
+                }
+                long remaining = (expiresAt > 0) ? expiresAt - System.currentTimeMillis() : FALLBACK_RENEW_MILLIS;
+                if (remaining > 0) {
+                    schedule(device, expiresAt, Math.max(MIN_RETRY_MILLIS, remaining / 4));
+                } else {
+                    // the lease lapsed before it could be renewed
+                    renewals.remove(deviceId);
+                    reservations.drop(device);
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Expiry of a reservation in epoch milliseconds.
+     *
+     * @param reservation the reservation
+     * @return the expiry, or 0 when the server did not report one
+     */
+    static long expiresAtMillis(DeviceReservation reservation) {
+        if (!reservation.hasExpires()) {
+            return 0;
+        }
+        Timestamp expires = reservation.getExpires();
+        return TimeUnit.SECONDS.toMillis(expires.getSeconds()) + TimeUnit.NANOSECONDS.toMillis(expires.getNanos());
+    }
+}
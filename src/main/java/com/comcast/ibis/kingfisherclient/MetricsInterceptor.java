@@ -0,0 +1,92 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+/**
+ * The type Metrics interceptor. Records every call into {@link ClientMetrics}. It is installed
+ * outermost, so a call is measured as the caller sees it, including retries and hedges.
+ */
+class MetricsInterceptor implements ClientInterceptor {
+    private final ClientMetrics metrics;
+
+    /**
+     * Instantiates a new Metrics interceptor.
+     *
+     * @param metrics the metrics
+     */
+    MetricsInterceptor(ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        String name = method.getFullMethodName().substring(method.getFullMethodName().lastIndexOf('/') + 1);
+        ClientMetrics.Recorder recorder = metrics.method(name);
+
+        return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+            private long startedAt;
+            private volatile long requestBytes;
+            private volatile long responseBytes;
+            private volatile String deviceId;
+            private volatile ClientMetrics.Recorder device;
+
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                startedAt = System.nanoTime();
+                recorder.started();
+                try {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(responseListener) {
+                        @Override
+                        public void onMessage(RespT message) {
+                            responseBytes += size(message);
+                            super.onMessage(message);
+                        }
+
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            long latency = System.nanoTime() - startedAt;
+                            recorder.finished();
+                            recorder.record(status.getCode(), latency, requestBytes, responseBytes);
+                            if (device != null) {
+                                device.finished();
+                                device.record(status.getCode(), latency, requestBytes, responseBytes);
+                            }
+                            metrics.publish(name, deviceId, status.getCode(), latency, requestBytes, responseBytes);
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException e) {
+                    recorder.finished();
+                    throw e;
+                }
+            }
+
+            @Override
+            public void sendMessage(ReqT message) {
+                requestBytes += size(message);
+                if (deviceId == null) {
+                    deviceId = metrics.deviceId(name, message);
+                    device = (deviceId != null) ? metrics.device(deviceId) : null;
+                    if (device != null) {
+                        device.started();
+                    }
+                }
+                super.sendMessage(message);
+            }
+        };
+    }
+
+    private static long size(Object message) {
+        // protobuf memoizes the size, and the marshaller computes it anyway to serialize
+        return (message instanceof MessageLite) ? ((MessageLite) message).getSerializedSize() : 0;
+    }
+}
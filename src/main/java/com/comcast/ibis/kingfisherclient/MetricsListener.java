@@ -0,0 +1,23 @@
+package com.comcast.ibis.kingfisherclient;
+
+import io.grpc.Status;
+
+/**
+ * The interface Metrics listener. Receives every completed call, e.g. to forward it to a metrics
+ * registry. It is called on the thread that completes the call, so it must be quick and must not
+ * block.
+ */
+public interface MetricsListener {
+
+    /**
+     * On call completed.
+     *
+     * @param method        the Kingfisher method name, e.g. "Screenshot"
+     * @param deviceId      the device the call addressed, or null
+     * @param status        the status code
+     * @param latencyNanos  the latency in nanoseconds
+     * @param requestBytes  the serialized size of the request
+     * @param responseBytes the serialized size of the response
+     */
+    void onCallCompleted(String method, String deviceId, Status.Code status, long latencyNanos, long requestBytes, long responseBytes);
+}
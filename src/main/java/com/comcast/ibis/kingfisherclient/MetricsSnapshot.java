@@ -0,0 +1,59 @@
+package com.comcast.ibis.kingfisherclient;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The type Metrics snapshot. Call stats of every method and device at one point in time.
+ */
+public class MetricsSnapshot {
+    private final long takenAtMillis;
+    private final Map<String, CallStats> methods;
+    private final Map<String, CallStats> devices;
+
+    /**
+     * Instantiates a new Metrics snapshot.
+     *
+     * @param takenAtMillis the taken at millis
+     * @param methods       the methods
+     * @param devices       the devices
+     */
+    MetricsSnapshot(long takenAtMillis, Map<String, CallStats> methods, Map<String, CallStats> devices) {
+        this.takenAtMillis = takenAtMillis;
+        this.methods = Collections.unmodifiableMap(new TreeMap<>(methods));
+        this.devices = Collections.unmodifiableMap(new TreeMap<>(devices));
+    }
+
+    /**
+     * Gets taken at millis.
+     *
+     * @return when the snapshot was taken, in epoch milliseconds
+     */
+    public long getTakenAtMillis() {
+        return takenAtMillis;
+    }
+
+    /**
+     * Gets methods.
+     *
+     * @return the stats by Kingfisher method name
+     */
+    public Map<String, CallStats> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Gets devices.
+     *
+     * @return the stats by device id, over every method addressing the device
+     */
+    public Map<String, CallStats> getDevices() {
+        return devices;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsSnapshot{methods=" + methods + ", devices=" + devices + "}";
+    }
+}
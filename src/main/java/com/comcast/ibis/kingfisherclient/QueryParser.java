@@ -0,0 +1,316 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The type Query parser. Compiles a device query into a {@link SearchPredicate} tree.
+ *
+ * <pre>
+ * query      := or
+ * or         := and ("OR" and)*
+ * and        := unary ("AND" unary)*
+ * unary      := "NOT" unary | "(" or ")" | comparison
+ * comparison := path ("=" value | "!=" value | ["NOT"] "IN" "(" value ("," value)* ")")?
+ * </pre>
+ *
+ * A path without a comparison must name a flag. Keywords are case insensitive, and values
+ * containing spaces or punctuation are quoted with ' or ".
+ */
+final class QueryParser {
+    private static final Map<String, SearchPredicate.Field> FIELDS = new HashMap<>();
+    private static final Map<String, SearchPredicate.Field> KEYED_FIELDS = new HashMap<>();
+    private static final Map<String, SearchPredicate.Flag> FLAGS = new HashMap<>();
+
+    static {
+        FIELDS.put("make", SearchPredicate.Field.MAKE);
+        FIELDS.put("model", SearchPredicate.Field.MODEL);
+        FIELDS.put("name", SearchPredicate.Field.NAME);
+        FIELDS.put("id", SearchPredicate.Field.DEVICE_ID);
+        FIELDS.put("device_id", SearchPredicate.Field.DEVICE_ID);
+        FIELDS.put("rack", SearchPredicate.Field.RACK_NAME);
+        FIELDS.put("rack_name", SearchPredicate.Field.RACK_NAME);
+        FIELDS.put("reserved_by", SearchPredicate.Field.RESERVED_BY);
+        FIELDS.put("reservation.user", SearchPredicate.Field.RESERVED_BY);
+        // the rack and device paths of fields that have their own index
+        FIELDS.put("rackdata.device_make", SearchPredicate.Field.MAKE);
+        FIELDS.put("rackdata.rack_name", SearchPredicate.Field.RACK_NAME);
+        FIELDS.put("device.device_model", SearchPredicate.Field.MODEL);
+
+        KEYED_FIELDS.put("label", SearchPredicate.Field.LABEL);
+        KEYED_FIELDS.put("labels", SearchPredicate.Field.LABEL);
+        KEYED_FIELDS.put("device", SearchPredicate.Field.DEVICE);
+        KEYED_FIELDS.put("rackdata", SearchPredicate.Field.RACKDATA);
+        KEYED_FIELDS.put("other_property", SearchPredicate.Field.OTHER_PROPERTY);
+        KEYED_FIELDS.put("other_properties", SearchPredicate.Field.OTHER_PROPERTY);
+
+        for (SearchPredicate.Flag flag : SearchPredicate.Flag.values()) {
+            if (!flag.isKeyed()) {
+                FLAGS.put(flag.name().toLowerCase(Locale.ROOT), flag);
+                FLAGS.put("flags." + flag.name().toLowerCase(Locale.ROOT), flag);
+            }
+        }
+    }
+
+    private final String query;
+    private final List<Token> tokens;
+    private int position;
+
+    private QueryParser(String query) {
+        this.query = query;
+        this.tokens = tokenize(query);
+    }
+
+    /**
+     * Parse a query.
+     *
+     * @param query the query, e.g. "make=Arris AND label.env IN (qa,stage) AND flags.has_video"
+     * @return the predicate, as written; see {@link SearchPredicate#optimize(Predicate)}
+     * @throws IllegalArgumentException when the query is malformed or names an unknown field
+     */
+    static Predicate<DeviceData> parse(String query) {
+        QueryParser parser = new QueryParser(query);
+        Predicate<DeviceData> predicate = parser.or();
+        if (parser.peek() != null) {
+            throw parser.error("unexpected " + parser.peek());
+        }
+        return predicate;
+    }
+
+    private Predicate<DeviceData> or() {
+        List<Predicate<DeviceData>> operands = new ArrayList<>();
+        operands.add(and());
+        while (keyword("OR")) {
+            operands.add(and());
+        }
+        return (operands.size() == 1) ? operands.get(0) : new SearchPredicate.Or(operands);
+    }
+
+    private Predicate<DeviceData> and() {
+        List<Predicate<DeviceData>> operands = new ArrayList<>();
+        operands.add(unary());
+        while (keyword("AND")) {
+            operands.add(unary());
+        }
+        return (operands.size() == 1) ? operands.get(0) : new SearchPredicate.And(operands);
+    }
+
+    private Predicate<DeviceData> unary() {
+        if (keyword("NOT")) {
+            return new SearchPredicate.Not(unary());
+        }
+        if (symbol("(")) {
+            Predicate<DeviceData> inner = or();
+            expect(")");
+            return inner;
+        }
+        return comparison();
+    }
+
+    private Predicate<DeviceData> comparison() {
+        Token path = next();
+        if (path == null || path.symbol || path.quoted || isKeyword(path)) {
+            throw error("expected a field or flag" + (path != null ? ", got " + path : ""),
+                    (path != null) ? path.offset : query.length());
+        }
+        String name = path.text;
+
+        SearchPredicate.Is flag = flag(name);
+        if (flag != null) {
+            if (symbol("=")) {
+                return bool(value()) ? flag : new SearchPredicate.Not(flag);
+            }
+            if (symbol("!=")) {
+                return bool(value()) ? new SearchPredicate.Not(flag) : flag;
+            }
+            return flag;
+        }
+
+        SearchPredicate.Field field = FIELDS.get(name.toLowerCase(Locale.ROOT));
+        String key = null;
+        if (field == null) {
+            int dot = name.indexOf('.');
+            if (dot > 0) {
+                field = KEYED_FIELDS.get(name.substring(0, dot).toLowerCase(Locale.ROOT));
+                key = name.substring(dot + 1);
+            }
+            if (field == null || key.isEmpty() || !field.isKnownKey(key)) {
+                throw error("unknown field " + name, path.offset);
+            }
+        }
+
+        if (symbol("=")) {
+            return new SearchPredicate.Match(field, key, value());
+        }
+        if (symbol("!=")) {
+            return new SearchPredicate.Not(new SearchPredicate.Match(field, key, value()));
+        }
+        boolean negated = keyword("NOT");
+        if (!keyword("IN")) {
+            throw error("expected =, != or IN after " + name);
+        }
+        expect("(");
+        List<String> values = new ArrayList<>();
+        do {
+            values.add(value());
+        } while (symbol(","));
+        expect(")");
+        Predicate<DeviceData> in = (values.size() == 1)
+                ? new SearchPredicate.Match(field, key, values.get(0))
+                : new SearchPredicate.In(field, key, values);
+        return negated ? new SearchPredicate.Not(in) : in;
+    }
+
+    private static SearchPredicate.Is flag(String name) {
+        SearchPredicate.Flag flag = FLAGS.get(name.toLowerCase(Locale.ROOT));
+        if (flag != null) {
+            return new SearchPredicate.Is(flag, null);
+        }
+        int dot = name.indexOf('.');
+        if (dot > 0 && dot < name.length() - 1) {
+            String prefix = name.substring(0, dot).toLowerCase(Locale.ROOT);
+            if (prefix.equals("feature") || prefix.equals("features")) {
+                return new SearchPredicate.Is(SearchPredicate.Flag.FEATURE, name.substring(dot + 1));
+            }
+        }
+        return null;
+    }
+
+    private boolean bool(String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        // the value is the token just read
+        throw error("expected true or false, got " + value, tokens.get(position - 1).offset);
+    }
+
+    private String value() {
+        Token token = next();
+        if (token == null || token.symbol || (!token.quoted && isKeyword(token))) {
+            throw error("expected a value" + (token != null ? ", got " + token : ""),
+                    (token != null) ? token.offset : query.length());
+        }
+        return token.text;
+    }
+
+    private boolean keyword(String keyword) {
+        Token token = peek();
+        if (token != null && !token.symbol && !token.quoted && token.text.equalsIgnoreCase(keyword)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isKeyword(Token token) {
+        String text = token.text.toUpperCase(Locale.ROOT);
+        return text.equals("AND") || text.equals("OR") || text.equals("NOT") || text.equals("IN");
+    }
+
+    private boolean symbol(String symbol) {
+        Token token = peek();
+        if (token != null && token.symbol && token.text.equals(symbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String symbol) {
+        if (!symbol(symbol)) {
+            Token token = peek();
+            throw error("expected " + symbol + (token != null ? ", got " + token : ""));
+        }
+    }
+
+    private Token peek() {
+        return (position < tokens.size()) ? tokens.get(position) : null;
+    }
+
+    private Token next() {
+        Token token = peek();
+        if (token != null) {
+            position++;
+        }
+        return token;
+    }
+
+    private IllegalArgumentException error(String message) {
+        Token token = peek();
+        return error(message, (token != null) ? token.offset : query.length());
+    }
+
+    private IllegalArgumentException error(String message, int offset) {
+        return new IllegalArgumentException(message + " at " + offset + " in query: " + query);
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == ',' || c == '=') {
+                tokens.add(new Token(String.valueOf(c), i, true, false));
+                i++;
+            } else if (c == '!' && i + 1 < query.length() && query.charAt(i + 1) == '=') {
+                tokens.add(new Token("!=", i, true, false));
+                i += 2;
+            } else if (c == '\'' || c == '"') {
+                StringBuilder text = new StringBuilder();
+                int start = i++;
+                while (i < query.length() && query.charAt(i) != c) {
+                    if (query.charAt(i) == '\\' && i + 1 < query.length()) {
+                        i++;
+                    }
+                    text.append(query.charAt(i++));
+                }
+                if (i == query.length()) {
+                    throw new IllegalArgumentException("unterminated string at " + start + " in query: " + query);
+                }
+                i++;
+                tokens.add(new Token(text.toString(), start, false, true));
+            } else {
+                int start = i;
+                while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                        && "()=,!'\"".indexOf(query.charAt(i)) < 0) {
+                    i++;
+                }
+                if (start == i) {
+                    throw new IllegalArgumentException("unexpected " + c + " at " + i + " in query: " + query);
+                }
+                tokens.add(new Token(query.substring(start, i), start, false, false));
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Token {
+        private final String text;
+        private final int offset;
+        private final boolean symbol;
+        private final boolean quoted;
+
+        private Token(String text, int offset, boolean symbol, boolean quoted) {
+            this.text = text;
+            this.offset = offset;
+            this.symbol = symbol;
+            this.quoted = quoted;
+        }
+
+        @Override
+        public String toString() {
+            return quoted ? "'" + text + "'" : text;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.comcast.ibis.kingfisherclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * The type Reservation journal. An append-only, memory-mapped log of the reservations a client
+ * holds: a record per lock, renewal and release, each with the device id, the secret and the lease
+ * expiry. Appends are plain memory writes, so they cost no system call on the reservation path and
+ * survive the JVM crashing; they are not forced to disk and may be lost if the machine itself goes
+ * down.
+ *
+ * <p>Each record is framed by its length and a CRC32 of its payload, and the length is written
+ * last, so a record torn by a crash fails its check and ends the replay. When the mapped region is
+ * full the live reservations are rewritten to a new file that atomically replaces the journal.
+ * A lock file next to the journal keeps two clients from sharing it. The files are created
+ * readable by their owner only where the file system supports POSIX permissions, since the
+ * journal holds reservation secrets.
+ */
+final class ReservationJournal implements Closeable {
+    private static final int MAGIC = 0x4b464a31;
+    private static final int HEADER_BYTES = 8;
+    private static final int FRAME_BYTES = 8;
+    private static final int MIN_CAPACITY = 64 * 1024;
+    private static final byte LOCK = 1;
+    private static final byte RENEW = 2;
+    private static final byte RELEASE = 3;
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private final Path path;
+    private final Map<String, Entry> live = new LinkedHashMap<>();
+    private final CRC32 crc = new CRC32();
+    // not a monitor: compaction does file io while holding it, which would pin a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel lockChannel;
+    private FileLock fileLock;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean open;
+
+    /**
+     * Instantiates a new Reservation journal. Nothing is read or written until it is opened.
+     *
+     * @param path the journal file
+     */
+    ReservationJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Open the journal, replay it and compact it.
+     *
+     * @return the reservations left unexpired by the previous client, by device id
+     * @throws IOException           the io exception
+     * @throws IllegalStateException when another client has the journal open
+     */
+    Map<String, Entry> open() throws IOException {
+        try {
+            lock.lock();
+            return openLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, Entry> openLocked() throws IOException {
+        if (open) {
+            throw new IllegalStateException("reservation journal is already open");
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        lockChannel = create(sibling(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            fileLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("reservation journal " + path + " is in use by another client");
+        }
+
+        try {
+            if (Files.exists(path)) {
+                try (FileChannel existing = FileChannel.open(path, StandardOpenOption.READ)) {
+                    replay(existing.map(FileChannel.MapMode.READ_ONLY, 0, existing.size()));
+                }
+            }
+            long now = System.currentTimeMillis();
+            live.values().removeIf(entry -> entry.expiresAtMillis > 0 && entry.expiresAtMillis <= now);
+            compact(0);
+        } catch (IOException | RuntimeException e) {
+            fileLock.release();
+            lockChannel.close();
+            throw e;
+        }
+        open = true;
+        return Collections.unmodifiableMap(new LinkedHashMap<>(live));
+    }
+
+    /**
+     * Record a new reservation.
+     *
+     * @param deviceId        the device id
+     * @param secret          the reservation secret
+     * @param expiresAtMillis the lease expiry, or 0 when unknown
+     */
+    void locked(String deviceId, String secret, long expiresAtMillis) {
+        try {
+            lock.lock();
+            append(LOCK, deviceId, secret, expiresAtMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a renewed reservation.
+     *
+     * @param deviceId        the device id
+     * @param secret          the reservation secret
+     * @param expiresAtMillis the lease expiry, or 0 when unknown
+     */
+    void renewed(String deviceId, String secret, long expiresAtMillis) {
+        try {
+            lock.lock();
+            append(RENEW, deviceId, secret, expiresAtMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a released or lapsed reservation.
+     *
+     * @param deviceId the device id
+     */
+    void released(String deviceId) {
+        try {
+            lock.lock();
+            if (live.containsKey(deviceId)) {
+                append(RELEASE, deviceId, "", 0);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the journal. Reservations still recorded are replayed by the next client to open it.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.lock();
+            if (!open) {
+                return;
+            }
+            open = false;
+            buffer = null;
+            try {
+                channel.close();
+            } finally {
+                fileLock.release();
+                lockChannel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(byte type, String deviceId, String secret, long expiresAtMillis) {
+        if (!open) {
+            return;
+        }
+        if (type == RELEASE) {
+            live.remove(deviceId);
+        } else {
+            live.put(deviceId, new Entry(deviceId, secret, expiresAtMillis));
+        }
+        byte[] payload = payload(type, deviceId, secret, expiresAtMillis);
+        if (buffer.remaining() < FRAME_BYTES + payload.length + 4) {
+            try {
+                // the live reservations already include this record
+                compact(FRAME_BYTES + payload.length);
+                return;
+            } catch (IOException e) {
+                // the journal is best effort, the reservation itself stands
+                return;
+            }
+        }
+        write(buffer, payload);
+    }
+
+    private void write(ByteBuffer target, byte[] payload) {
+        int start = target.position();
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        target.putInt(start + 4, (int) crc.getValue());
+        target.position(start + FRAME_BYTES);
+        target.put(payload);
+        // the length goes in last, it is what makes the record visible to a replay
+        target.putInt(start, payload.length);
+    }
+
+    private void replay(ByteBuffer source) {
+        if (source.remaining() < HEADER_BYTES || source.getInt(0) != MAGIC) {
+            return;
+        }
+        source.position(HEADER_BYTES);
+        while (source.remaining() >= FRAME_BYTES) {
+            int length = source.getInt();
+            int checksum = source.getInt();
+            if (length <= 0 || length > source.remaining()) {
+                return;
+            }
+            byte[] payload = new byte[length];
+            source.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                // torn by a crash while it was being written
+                return;
+            }
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            byte type = record.get();
+            long expiresAtMillis = record.getLong();
+            String deviceId = string(record);
+            String secret = string(record);
+            if (type == RELEASE) {
+                live.remove(deviceId);
+            } else {
+                live.put(deviceId, new Entry(deviceId, secret, expiresAtMillis));
+            }
+        }
+    }
+
+    /**
+     * Rewrite the live reservations to a fresh file sized with room to spare, and map it in place
+     * of the journal.
+     */
+    private void compact(int extra) throws IOException {
+        byte[][] records = new byte[live.size()][];
+        long needed = HEADER_BYTES + extra + 4;
+        int i = 0;
+        for (Entry entry : live.values()) {
+            records[i] = payload(LOCK, entry.deviceId, entry.secret, entry.expiresAtMillis);
+            needed += FRAME_BYTES + records[i].length;
+            i++;
+        }
+        long capacity = MIN_CAPACITY;
+        while (capacity < needed * 2) {
+            capacity *= 2;
+        }
+
+        Path temp = sibling(".tmp");
+        // a temp file left by a crash keeps whatever permissions it was created with
+        Files.deleteIfExists(temp);
+        FileChannel next = create(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer mapped;
+        try {
+            mapped = next.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            mapped.putInt(0, MAGIC);
+            mapped.position(HEADER_BYTES);
+            for (byte[] record : records) {
+                write(mapped, record);
+            }
+            mapped.force();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            next.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        channel = next;
+        buffer = mapped;
+    }
+
+    private static FileChannel create(Path file, OpenOption... options) throws IOException {
+        Set<OpenOption> openOptions = new HashSet<>(Arrays.asList(options));
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return FileChannel.open(file, openOptions, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        return FileChannel.open(file, openOptions);
+    }
+
+    private Path sibling(String suffix) {
+        return path.resolveSibling(path.getFileName() + suffix);
+    }
+
+    private static byte[] payload(byte type, String deviceId, String secret, long expiresAtMillis) {
+        byte[] id = deviceId.getBytes(StandardCharsets.UTF_8);
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 2 + id.length + 2 + key.length);
+        payload.put(type).putLong(expiresAtMillis);
+        payload.putShort((short) id.length).put(id);
+        payload.putShort((short) key.length).put(key);
+        return payload.array();
+    }
+
+    private static String string(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort() & 0xffff];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The type Entry. A reservation recorded in the journal.
+     */
+    static final class Entry {
+        private final String deviceId;
+        private final String secret;
+        private final long expiresAtMillis;
+
+        private Entry(String deviceId, String secret, long expiresAtMillis) {
+            this.deviceId = deviceId;
+            this.secret = secret;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        /**
+         * Gets device id.
+         *
+         * @return the device id
+         */
+        String getDeviceId() {
+            return deviceId;
+        }
+
+        /**
+         * Gets secret.
+         *
+         * @return the reservation secret
+         */
+        String getSecret() {
+            return secret;
+        }
+
+        /**
+         * Gets expires at millis.
+         *
+         * @return the lease expiry in epoch milliseconds, or 0 when unknown
+         */
+        long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceReservation;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The type Reservation registry. Tracks the reservation secret of every device held by a client.
+ * Mutations for a device are serialized through a lock striped on its device id. The lock is only
+ * held for bookkeeping, never across a call to the server, since unrelated devices share a stripe
+ * and it is also taken in completion callbacks. With a {@link ReservationJournal} attached, every change
+ * is also written to the journal so a restarted client can recover its reservations.
+ */
+class ReservationRegistry {
+    private static final int STRIPES = 64;
+
+    private final Lock[] stripes;
+    private final Map<String, String> secrets = new ConcurrentHashMap<>();
+    private final Map<String, Device> heldDevices = new ConcurrentHashMap<>();
+    private volatile ReservationJournal journal;
+
+    /**
+     * Instantiates a new Reservation registry.
+     */
+    ReservationRegistry() {
+        this.stripes = new Lock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Lock guarding the reservation state of a device.
+     *
+     * @param deviceId the device id
+     * @return the lock
+     */
+    Lock lockFor(String deviceId) {
+        int hash = deviceId.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[hash & (STRIPES - 1)];
+    }
+
+    /**
+     * Live view of the secrets, keyed by device id.
+     *
+     * @return the secrets
+     */
+    Map<String, String> secrets() {
+        return secrets;
+    }
+
+    /**
+     * Secret string.
+     *
+     * @param deviceId the device id
+     * @return the secret, or null when the device is not held
+     */
+    String secret(String deviceId) {
+        return secrets.get(deviceId);
+    }
+
+    /**
+     * Attach the journal reservations are recorded in.
+     *
+     * @param journal the journal
+     */
+    void setJournal(ReservationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Record a device as held under a reservation, new or renewed.
+     *
+     * @param device      the device
+     * @param reservation the reservation
+     */
+    void hold(Device device, DeviceReservation reservation) {
+        String deviceId = device.deviceRef.getDevice();
+        String secret = reservation.getReservationSecret();
+        String previous = secrets.put(deviceId, secret);
+        heldDevices.put(deviceId, device);
+        ReservationJournal current = journal;
+        if (current != null) {
+            long expiresAt = LeaseRenewer.expiresAtMillis(reservation);
+            if (secret.equals(previous)) {
+                current.renewed(deviceId, secret, expiresAt);
+            } else {
+                current.locked(deviceId, secret, expiresAt);
+            }
+        }
+    }
+
+    /**
+     * Forget a held device.
+     *
+     * @param device the device
+     */
+    void drop(Device device) {
+        String deviceId = device.deviceRef.getDevice();
+        secrets.remove(deviceId);
+        heldDevices.remove(deviceId);
+        ReservationJournal current = journal;
+        if (current != null) {
+            current.released(deviceId);
+        }
+    }
+
+    /**
+     * Live view of the held devices.
+     *
+     * @return the held devices
+     */
+    Collection<Device> heldDevices() {
+        return heldDevices.values();
+    }
+}
@@ -0,0 +1,222 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisherclient.common.Utils;
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The type Screen capture. Captures screenshots of a device at a target frame rate into a bounded
+ * queue. When the consumer falls behind, the oldest queued frame is dropped to make room, so the
+ * queue always holds the most recent frames. A new screenshot is only requested once the previous
+ * one has arrived, so a slow device lowers the frame rate instead of piling up calls.
+ */
+public class ScreenCapture implements AutoCloseable {
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private final Device device;
+    private final BlockingQueue<Frame> frames;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile ScheduledFuture<?> task;
+
+    /**
+     * Instantiates a new Screen capture.
+     *
+     * @param device    the device
+     * @param capacity  the number of frames buffered
+     * @param scheduler the scheduler, or null to use a dedicated thread
+     */
+    ScreenCapture(Device device, int capacity, ScheduledExecutorService scheduler) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.device = device;
+        this.frames = new ArrayBlockingQueue<>(capacity);
+        this.ownsScheduler = scheduler == null;
+        this.scheduler = (scheduler != null) ? scheduler : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kingfisher-capture-" + device.deviceRef.getDevice());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start capturing.
+     *
+     * @param framesPerSecond the target frame rate
+     */
+    void start(double framesPerSecond) {
+        if (!(framesPerSecond > 0)) {
+            throw new IllegalArgumentException("frames per second must be positive");
+        }
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+        this.task = scheduler.scheduleAtFixedRate(this::capture, 0, Math.max(1, periodNanos), TimeUnit.NANOSECONDS);
+    }
+
+    private void capture() {
+        if (!inFlight.compareAndSet(false, true)) {
+            return;
+        }
+        long captureSequence = sequence.incrementAndGet();
+        try {
+            device.screenshotAsync(DIRECT_EXECUTOR).whenComplete((image, e) -> {
+                inFlight.set(false);
+                if (e != null) {
+                    failed.incrementAndGet();
+                    return;
+                }
+                offer(new Frame(captureSequence, System.currentTimeMillis(), image));
+            });
+        } catch (RuntimeException e) {
+            inFlight.set(false);
+            failed.incrementAndGet();
+        }
+    }
+
+    private void offer(Frame frame) {
+        while (!frames.offer(frame)) {
+            if (frames.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Take the oldest buffered frame, waiting for one if necessary.
+     *
+     * @return the frame
+     * @throws InterruptedException the interrupted exception
+     */
+    public Frame take() throws InterruptedException {
+        return frames.take();
+    }
+
+    /**
+     * Poll the oldest buffered frame.
+     *
+     * @param timeout the timeout
+     * @param unit    the unit
+     * @return the frame, or null if none arrived in time
+     * @throws InterruptedException the interrupted exception
+     */
+    public Frame poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return frames.poll(timeout, unit);
+    }
+
+    /**
+     * Gets dropped frames.
+     *
+     * @return the number of frames dropped because the queue was full
+     */
+    public long getDroppedFrames() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets failed captures.
+     *
+     * @return the number of screenshot calls that failed
+     */
+    public long getFailedCaptures() {
+        return failed.get();
+    }
+
+    /**
+     * Stop capturing. Frames already buffered can still be taken.
+     */
+    @Override
+    public void close() {
+        ScheduledFuture<?> current = task;
+        if (current != null) {
+            current.cancel(false);
+        }
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * The type Frame.
+     */
+    public static class Frame {
+        private final long sequence;
+        private final long capturedAtMillis;
+        private final ByteString image;
+
+        /**
+         * Instantiates a new Frame.
+         *
+         * @param sequence         the sequence
+         * @param capturedAtMillis the captured at millis
+         * @param image            the image
+         */
+        Frame(long sequence, long capturedAtMillis, ByteString image) {
+            this.sequence = sequence;
+            this.capturedAtMillis = capturedAtMillis;
+            this.image = image;
+        }
+
+        /**
+         * Gets sequence.
+         *
+         * @return the capture sequence number; gaps mark dropped or failed frames
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Gets captured at millis.
+         *
+         * @return the time the frame arrived, in epoch milliseconds
+         */
+        public long getCapturedAtMillis() {
+            return capturedAtMillis;
+        }
+
+        /**
+         * Gets image.
+         *
+         * @return the image
+         */
+        public ByteString getImage() {
+            return image;
+        }
+
+        /**
+         * Read only view of the image bytes.
+         *
+         * @return the byte buffer
+         */
+        public ByteBuffer asReadOnlyByteBuffer() {
+            return image.asReadOnlyByteBuffer();
+        }
+
+        /**
+         * Write the image to a channel.
+         *
+         * @param channel the channel
+         * @return the number of bytes written
+         * @throws IOException the io exception
+         */
+        public long writeTo(WritableByteChannel channel) throws IOException {
+            return Utils.writeTo(image, channel);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.google.protobuf.ByteString;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The type Screen fingerprint. A coarse grayscale grid of a screenshot, cheap to compare. Two
+ * screenshots are as far apart as the largest difference between corresponding grid cells, so a
+ * localized change such as a focus highlight or a spinner still registers while encoder noise
+ * does not.
+ */
+class ScreenFingerprint {
+    static final int COLUMNS = 32;
+    static final int ROWS = 18;
+    static final int MAX_DISTANCE = 255;
+
+    // pixels sampled along each axis of a cell; enough to average out noise without reading every pixel
+    private static final int SAMPLES_PER_CELL = 4;
+
+    private final byte[] cells;
+    private final ByteString image;
+
+    private ScreenFingerprint(byte[] cells, ByteString image) {
+        this.cells = cells;
+        this.image = image;
+    }
+
+    /**
+     * Fingerprint a screenshot. Images that cannot be decoded are compared byte for byte.
+     *
+     * @param image the image
+     * @return the screen fingerprint
+     */
+    static ScreenFingerprint of(ByteString image) {
+        BufferedImage decoded;
+        try (InputStream input = image.newInput()) {
+            decoded = ImageIO.read(input);
+        } catch (IOException e) {
+            decoded = null;
+        }
+        if (decoded == null || decoded.getWidth() < COLUMNS || decoded.getHeight() < ROWS) {
+            return new ScreenFingerprint(null, image);
+        }
+
+        int width = decoded.getWidth();
+        int height = decoded.getHeight();
+        byte[] cells = new byte[COLUMNS * ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            int top = row * height / ROWS;
+            int cellHeight = (row + 1) * height / ROWS - top;
+            for (int column = 0; column < COLUMNS; column++) {
+                int left = column * width / COLUMNS;
+                int cellWidth = (column + 1) * width / COLUMNS - left;
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = top + (2 * sy + 1) * cellHeight / (2 * SAMPLES_PER_CELL);
+                    for (int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = left + (2 * sx + 1) * cellWidth / (2 * SAMPLES_PER_CELL);
+                        sum += luma(decoded.getRGB(x, y));
+                    }
+                }
+                cells[row * COLUMNS + column] = (byte) (sum / (SAMPLES_PER_CELL * SAMPLES_PER_CELL));
+            }
+        }
+        return new ScreenFingerprint(cells, image);
+    }
+
+    /**
+     * Distance between two fingerprints.
+     *
+     * @param other the other
+     * @return the largest cell difference, from 0 for identical screens to {@link #MAX_DISTANCE}
+     */
+    int distance(ScreenFingerprint other) {
+        if (cells == null || other.cells == null) {
+            return image.equals(other.image) ? 0 : MAX_DISTANCE;
+        }
+        int max = 0;
+        for (int i = 0; i < cells.length; i++) {
+            int diff = Math.abs((cells[i] & 0xff) - (other.cells[i] & 0xff));
+            if (diff > max) {
+                max = diff;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Gets image.
+     *
+     * @return the image
+     */
+    ByteString getImage() {
+        return image;
+    }
+
+    private static int luma(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        return (r * 77 + g * 150 + b * 29) >> 8;
+    }
+}
@@ -0,0 +1,183 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.google.protobuf.ByteString;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The type Screen settle. Waits for a device screen to stop changing, or to change, by polling
+ * screenshots instead of sleeping for a fixed time. Polling starts at the minimum interval, backs
+ * off towards the maximum while the screen is unchanged and drops back to the minimum as soon as
+ * it moves again.
+ */
+public class ScreenSettle {
+    private final long stablePeriodNanos;
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+    private final int threshold;
+
+    private ScreenSettle(ScreenSettleBuilder builder) {
+        this.stablePeriodNanos = builder.stablePeriodNanos;
+        this.minIntervalNanos = builder.minIntervalNanos;
+        this.maxIntervalNanos = builder.maxIntervalNanos;
+        this.threshold = builder.threshold;
+    }
+
+    /**
+     * Default screen settle.
+     *
+     * @return the screen settle
+     */
+    public static ScreenSettle defaults() {
+        return newBuilder().build();
+    }
+
+    /**
+     * New builder screen settle builder.
+     *
+     * @return the screen settle builder
+     */
+    public static ScreenSettleBuilder newBuilder() { return new ScreenSettleBuilder(); }
+
+    /**
+     * Wait until the screen has not changed for the stable period.
+     *
+     * @param device  the device
+     * @param timeout the timeout
+     * @param unit    the unit
+     * @return the settled screenshot
+     * @throws TimeoutException     if the screen is still changing when the timeout expires
+     * @throws InterruptedException the interrupted exception
+     */
+    public ByteString waitForStable(Device device, long timeout, TimeUnit unit) throws TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long interval = minIntervalNanos;
+        ScreenFingerprint settled = ScreenFingerprint.of(device.screenshot());
+        long settledSince = System.nanoTime();
+
+        while (true) {
+            if (System.nanoTime() - settledSince >= stablePeriodNanos) {
+                return settled.getImage();
+            }
+            long pollAt = System.nanoTime() + Math.min(interval, Math.max(0, settledSince + stablePeriodNanos - System.nanoTime()));
+            if (pollAt - deadline > 0) {
+                throw new TimeoutException("screen did not settle");
+            }
+            sleepUntil(pollAt);
+
+            ScreenFingerprint current = ScreenFingerprint.of(device.screenshot());
+            if (current.distance(settled) > threshold) {
+                settled = current;
+                settledSince = System.nanoTime();
+                interval = minIntervalNanos;
+            } else {
+                interval = Math.min(interval * 2, maxIntervalNanos);
+            }
+        }
+    }
+
+    /**
+     * Wait until the screen differs from a reference screenshot.
+     *
+     * @param device    the device
+     * @param reference the reference screenshot, usually taken before the input that should change it
+     * @param timeout   the timeout
+     * @param unit      the unit
+     * @return the first changed screenshot
+     * @throws TimeoutException     if the screen has not changed when the timeout expires
+     * @throws InterruptedException the interrupted exception
+     */
+    public ByteString waitForChange(Device device, ByteString reference, long timeout, TimeUnit unit) throws TimeoutException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long interval = minIntervalNanos;
+        ScreenFingerprint before = ScreenFingerprint.of(reference);
+
+        while (true) {
+            ScreenFingerprint current = ScreenFingerprint.of(device.screenshot());
+            if (current.distance(before) > threshold) {
+                return current.getImage();
+            }
+            long pollAt = System.nanoTime() + interval;
+            if (pollAt - deadline > 0) {
+                throw new TimeoutException("screen did not change");
+            }
+            sleepUntil(pollAt);
+            interval = Math.min(interval * 2, maxIntervalNanos);
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    /**
+     * The type Screen settle builder.
+     */
+    public static class ScreenSettleBuilder {
+        private long stablePeriodNanos = TimeUnit.MILLISECONDS.toNanos(1000);
+        private long minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private long maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(800);
+        private int threshold = 8;
+
+        /**
+         * Instantiates a new Screen settle builder.
+         */
+        public ScreenSettleBuilder() { }
+
+        /**
+         * Sets how long the screen must stay unchanged to count as settled.
+         *
+         * @param stablePeriod the stable period
+         * @param unit         the unit
+         * @return the stable period
+         */
+        public ScreenSettleBuilder setStablePeriod(long stablePeriod, TimeUnit unit) {
+            this.stablePeriodNanos = unit.toNanos(stablePeriod);
+            return this;
+        }
+
+        /**
+         * Sets the bounds of the polling interval.
+         *
+         * @param minInterval the interval used while the screen is changing
+         * @param maxInterval the interval polling backs off to while the screen is unchanged
+         * @param unit        the unit
+         * @return the poll interval
+         */
+        public ScreenSettleBuilder setPollInterval(long minInterval, long maxInterval, TimeUnit unit) {
+            if (minInterval <= 0 || maxInterval < minInterval) {
+                throw new IllegalArgumentException("poll interval must be positive and min must not exceed max");
+            }
+            this.minIntervalNanos = unit.toNanos(minInterval);
+            this.maxIntervalNanos = unit.toNanos(maxInterval);
+            return this;
+        }
+
+        /**
+         * Sets threshold.
+         *
+         * @param threshold the largest grayscale difference, 0 to 255, of any region of the screen that still counts as unchanged
+         * @return the threshold
+         */
+        public ScreenSettleBuilder setThreshold(int threshold) {
+            if (threshold < 0 || threshold >= ScreenFingerprint.MAX_DISTANCE) {
+                throw new IllegalArgumentException("threshold must be between 0 and 254");
+            }
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Build screen settle.
+         *
+         * @return the screen settle
+         */
+        public ScreenSettle build() {
+            return new ScreenSettle(this);
+        }
+    }
+}
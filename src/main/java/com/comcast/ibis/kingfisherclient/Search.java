@@ -2,11 +2,13 @@ package com.comcast.ibis.kingfisherclient;
 
 import com.comcast.ibis.kingfisher.DeviceData;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
 
 /**
- * The type Search.
+ * The type Search. The predicates are {@link SearchPredicate}s, whose structure lets searches
+ * send exact matches to the server and answer them from the inventory indexes.
  */
 public class Search {
     /**
@@ -15,7 +17,7 @@ public class Search {
      * @param make the make
      * @return the predicate
      */
-    public static Predicate<DeviceData> make(String make) { return s-> s.getRackdata().getDeviceMake().equals(make); }
+    public static Predicate<DeviceData> make(String make) { return new SearchPredicate.Match(SearchPredicate.Field.MAKE, make); }
 
     /**
      * Model predicate.
@@ -24,7 +26,7 @@ public class Search {
      * @return the predicate
      */
     public static Predicate<DeviceData> model(String model) {
-        return s-> s.getDevice().getDeviceModel().equals(model);
+        return new SearchPredicate.Match(SearchPredicate.Field.MODEL, model);
     }
 
     /**
@@ -34,7 +36,7 @@ public class Search {
      * @return the predicate
      */
     public static Predicate<DeviceData> name(String name) {
-        return s-> s.getMetadata().getName().equals(name);
+        return new SearchPredicate.Match(SearchPredicate.Field.NAME, name);
     }
 
     /**
@@ -44,7 +46,48 @@ public class Search {
      * @return the predicate
      */
     public static Predicate<DeviceData> deviceID(String deviceId) {
-        return s-> s.getReference().getDevice().equals(deviceId);
+        return new SearchPredicate.Match(SearchPredicate.Field.DEVICE_ID, deviceId);
+    }
+
+    /**
+     * Rack name predicate.
+     *
+     * @param rackName the rack name
+     * @return the predicate
+     */
+    public static Predicate<DeviceData> rackName(String rackName) {
+        return new SearchPredicate.Match(SearchPredicate.Field.RACK_NAME, rackName);
+    }
+
+    /**
+     * Label predicate.
+     *
+     * @param label the label name
+     * @param value the label value
+     * @return the predicate
+     */
+    public static Predicate<DeviceData> label(String label, String value) {
+        return new SearchPredicate.Match(SearchPredicate.Field.LABEL, label, value);
+    }
+
+    /**
+     * Query predicate. Compiles a query such as
+     * {@code make=Arris AND label.env IN (qa,stage) AND flags.has_video}, with the operands of
+     * each AND and OR reordered so cheap and decisive checks run first.
+     *
+     * <p>Comparisons are {@code =}, {@code !=}, {@code IN (...)} and {@code NOT IN (...)}, combined
+     * with AND, OR, NOT and parentheses. Fields are make, model, name, id, rack,
+     * reservation.user, label.&lt;name&gt;, device.&lt;field&gt; and rackdata.&lt;field&gt; for
+     * the fields of the device and rack data messages, and other_properties.&lt;name&gt;. Flags,
+     * which stand alone or compare to true or false, are flags.is_rack, flags.has_video,
+     * flags.has_power, reserved and feature.&lt;name&gt; for an enabled feature.
+     *
+     * @param query the query
+     * @return the predicate
+     * @throws IllegalArgumentException when the query is malformed or names an unknown field
+     */
+    public static Predicate<DeviceData> query(String query) {
+        return SearchPredicate.optimize(QueryParser.parse(query));
     }
 
     /**
@@ -53,16 +96,13 @@ public class Search {
      * @param funcs the funcs
      * @return the predicate
      */
+    @SafeVarargs
     public static Predicate<DeviceData> and(Predicate<DeviceData>... funcs) {
-        return dev -> {
-          for (Predicate<DeviceData> pred: funcs) {
-              if (!pred.test(dev)) {
-                  return false;
-              }
-          }
-
-          return true;
-        };
+        List<Predicate<DeviceData>> operands = new ArrayList<>(funcs.length);
+        for (Predicate<DeviceData> func : funcs) {
+            operands.add(func);
+        }
+        return new SearchPredicate.And(operands);
     }
 
     /**
@@ -71,15 +111,12 @@ public class Search {
      * @param funcs the funcs
      * @return the predicate
      */
+    @SafeVarargs
     public static Predicate<DeviceData> or(Predicate<DeviceData>... funcs) {
-        return dev -> {
-            for(Predicate<DeviceData> pred: funcs) {
-                if (pred.test(dev)) {
-                    return true;
-                }
-            }
-
-            return false;
-        };
+        List<Predicate<DeviceData>> operands = new ArrayList<>(funcs.length);
+        for (Predicate<DeviceData> func : funcs) {
+            operands.add(func);
+        }
+        return new SearchPredicate.Or(operands);
     }
 }
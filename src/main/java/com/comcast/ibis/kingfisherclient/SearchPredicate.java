@@ -0,0 +1,774 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+import com.comcast.ibis.kingfisher.DeviceFeature;
+import com.comcast.ibis.kingfisher.RackData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * The type Search predicate. A device predicate whose structure can be inspected, so that the parts
+ * the server understands can be sent with the query instead of being evaluated on every device,
+ * and so that conjunctions and disjunctions can evaluate their cheapest, most decisive operands
+ * first.
+ */
+public abstract class SearchPredicate implements Predicate<DeviceData> {
+    private static final double OPAQUE_COST = 16;
+    private static final double OPAQUE_SELECTIVITY = 0.5;
+
+    private static final Map<String, Function<com.comcast.ibis.kingfisher.Device, String>> DEVICE_PROPERTIES = new HashMap<>();
+    private static final Map<String, Function<RackData, String>> RACK_PROPERTIES = new HashMap<>();
+
+    static {
+        DEVICE_PROPERTIES.put("device_id", com.comcast.ibis.kingfisher.Device::getDeviceId);
+        DEVICE_PROPERTIES.put("device_type", com.comcast.ibis.kingfisher.Device::getDeviceType);
+        DEVICE_PROPERTIES.put("device_model", com.comcast.ibis.kingfisher.Device::getDeviceModel);
+        DEVICE_PROPERTIES.put("ecm_mac", com.comcast.ibis.kingfisher.Device::getEcmMac);
+        DEVICE_PROPERTIES.put("estb_mac", com.comcast.ibis.kingfisher.Device::getEstbMac);
+        DEVICE_PROPERTIES.put("status", com.comcast.ibis.kingfisher.Device::getStatus);
+        DEVICE_PROPERTIES.put("billing_status", com.comcast.ibis.kingfisher.Device::getBillingStatus);
+        DEVICE_PROPERTIES.put("serial_number", com.comcast.ibis.kingfisher.Device::getSerialNumber);
+        DEVICE_PROPERTIES.put("receiver_id", com.comcast.ibis.kingfisher.Device::getReceiverId);
+        DEVICE_PROPERTIES.put("friendly_name", com.comcast.ibis.kingfisher.Device::getFriendlyName);
+        DEVICE_PROPERTIES.put("moca_mac", com.comcast.ibis.kingfisher.Device::getMocaMac);
+        DEVICE_PROPERTIES.put("service_account_id", com.comcast.ibis.kingfisher.Device::getServiceAccountId);
+        DEVICE_PROPERTIES.put("wifi_mac", com.comcast.ibis.kingfisher.Device::getWifiMac);
+        DEVICE_PROPERTIES.put("ethernet_mac", com.comcast.ibis.kingfisher.Device::getEthernetMac);
+        DEVICE_PROPERTIES.put("estb_ip", com.comcast.ibis.kingfisher.Device::getEstbIp);
+
+        RACK_PROPERTIES.put("ir_blaster_type", RackData::getIrBlasterType);
+        RACK_PROPERTIES.put("ir_service_port", RackData::getIrServicePort);
+        RACK_PROPERTIES.put("ir_service_url", RackData::getIrServiceUrl);
+        RACK_PROPERTIES.put("rack_name", RackData::getRackName);
+        RACK_PROPERTIES.put("slot_name", RackData::getSlotName);
+        RACK_PROPERTIES.put("trace_service_url", RackData::getTraceServiceUrl);
+        RACK_PROPERTIES.put("video_camera", RackData::getVideoCamera);
+        RACK_PROPERTIES.put("video_source_url", RackData::getVideoSourceUrl);
+        RACK_PROPERTIES.put("device_make", RackData::getDeviceMake);
+        RACK_PROPERTIES.put("power_service_url", RackData::getPowerServiceUrl);
+        RACK_PROPERTIES.put("power_outlet", rack -> String.valueOf(rack.getPowerOutlet()));
+    }
+
+    private SearchPredicate() { }
+
+    /**
+     * Estimated relative cost of testing one device.
+     *
+     * @return the cost
+     */
+    abstract double cost();
+
+    /**
+     * Estimated fraction of devices that match.
+     *
+     * @return the selectivity, between 0 and 1
+     */
+    abstract double selectivity();
+
+    /**
+     * The enum Field of a device that can be matched.
+     */
+    public enum Field {
+        /**
+         * Make field.
+         */
+        MAKE("rackdata.device_make", false, (d, key) -> d.getRackdata().getDeviceMake()),
+        /**
+         * Model field.
+         */
+        MODEL("device.device_model", false, (d, key) -> d.getDevice().getDeviceModel()),
+        /**
+         * Name field.
+         */
+        NAME("metadata.name", false, (d, key) -> d.getMetadata().getName()),
+        /**
+         * Device id field.
+         */
+        DEVICE_ID("reference.device", false, (d, key) -> d.getReference().getDevice()),
+        /**
+         * Rack name field.
+         */
+        RACK_NAME("rackdata.rack_name", false, (d, key) -> d.getRackdata().getRackName()),
+        /**
+         * Label field, keyed by label name.
+         */
+        LABEL("metadata.labels", true, 3, 0.1, (d, key) -> d.getMetadata().getLabelsOrDefault(key, null)),
+        /**
+         * Reserved by field, the user holding the device's reservation.
+         */
+        RESERVED_BY("metadata.reservation.user.user", false, 1, 0.05, (d, key) -> d.getMetadata().getReservation().getUser().getUser()),
+        /**
+         * Device property field, keyed by the name of a device field such as "serial_number".
+         */
+        DEVICE("device", true, 2, 0.1, (d, key) -> {
+            Function<com.comcast.ibis.kingfisher.Device, String> property = DEVICE_PROPERTIES.get(key);
+            return (property != null) ? property.apply(d.getDevice()) : null;
+        }),
+        /**
+         * Rack data field, keyed by the name of a rack data field such as "slot_name".
+         */
+        RACKDATA("rackdata", true, 2, 0.1, (d, key) -> {
+            Function<RackData, String> property = RACK_PROPERTIES.get(key);
+            return (property != null) ? property.apply(d.getRackdata()) : null;
+        }),
+        /**
+         * Other property field, keyed by property name.
+         */
+        OTHER_PROPERTY("device.other_properties", true, 3, 0.1, (d, key) -> d.getDevice().getOtherPropertiesOrDefault(key, null));
+
+        private final String filterKey;
+        private final boolean keyed;
+        private final double cost;
+        private final double selectivity;
+        private final BiFunction<DeviceData, String, String> extractor;
+
+        Field(String filterKey, boolean keyed, BiFunction<DeviceData, String, String> extractor) {
+            this(filterKey, keyed, 1, 0.1, extractor);
+        }
+
+        Field(String filterKey, boolean keyed, double cost, double selectivity, BiFunction<DeviceData, String, String> extractor) {
+            this.filterKey = filterKey;
+            this.keyed = keyed;
+            this.cost = cost;
+            this.selectivity = selectivity;
+            this.extractor = extractor;
+        }
+
+        /**
+         * Gets filter key.
+         *
+         * @param key the map key of a keyed field, ignored otherwise
+         * @return the key of this field in a query devices filter
+         */
+        public String getFilterKey(String key) {
+            return keyed ? filterKey + "." + key : filterKey;
+        }
+
+        /**
+         * Is keyed boolean.
+         *
+         * @return whether values of this field are looked up by a map key
+         */
+        public boolean isKeyed() {
+            return keyed;
+        }
+
+        /**
+         * Whether a key names something this field can look up. Any key will do for map fields.
+         *
+         * @param key the key
+         * @return true if the key is known
+         */
+        public boolean isKnownKey(String key) {
+            if (this == DEVICE) {
+                return DEVICE_PROPERTIES.containsKey(key);
+            }
+            if (this == RACKDATA) {
+                return RACK_PROPERTIES.containsKey(key);
+            }
+            return keyed;
+        }
+
+        /**
+         * Value of the field on a device.
+         *
+         * @param device the device
+         * @param key    the map key of a keyed field, ignored otherwise
+         * @return the value, or null when a keyed field has no such key
+         */
+        public String valueOf(DeviceData device, String key) {
+            return extractor.apply(device, key);
+        }
+    }
+
+    /**
+     * The enum Flag, a yes or no property of a device.
+     */
+    public enum Flag {
+        /**
+         * Is rack flag.
+         */
+        IS_RACK(false, 1, 0.5, (d, key) -> d.getDeviceFlags().getIsRack()),
+        /**
+         * Has video flag.
+         */
+        HAS_VIDEO(false, 1, 0.5, (d, key) -> d.getDeviceFlags().getHasVideo()),
+        /**
+         * Has power flag.
+         */
+        HAS_POWER(false, 1, 0.5, (d, key) -> d.getDeviceFlags().getHasPower()),
+        /**
+         * Reserved flag, set while someone holds a reservation on the device.
+         */
+        RESERVED(false, 1, 0.5, (d, key) -> d.getMetadata().hasReservation()),
+        /**
+         * Feature flag, keyed by feature name, set when the device has the feature enabled.
+         */
+        FEATURE(true, 4, 0.3, (d, key) -> {
+            for (DeviceFeature feature : d.getMetadata().getFeaturesList()) {
+                if (feature.getEnabled() && feature.getName().equals(key)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+
+        private final boolean keyed;
+        private final double cost;
+        private final double selectivity;
+        private final BiPredicate<DeviceData, String> test;
+
+        Flag(boolean keyed, double cost, double selectivity, BiPredicate<DeviceData, String> test) {
+            this.keyed = keyed;
+            this.cost = cost;
+            this.selectivity = selectivity;
+            this.test = test;
+        }
+
+        /**
+         * Is keyed boolean.
+         *
+         * @return whether the flag is looked up by a name
+         */
+        public boolean isKeyed() {
+            return keyed;
+        }
+
+        /**
+         * Whether the flag is set on a device.
+         *
+         * @param device the device
+         * @param key    the name of a keyed flag, ignored otherwise
+         * @return true if set
+         */
+        public boolean isSet(DeviceData device, String key) {
+            return test.test(device, key);
+        }
+    }
+
+    /**
+     * Rewrite a predicate for evaluation: nested conjunctions and disjunctions are flattened,
+     * double negations removed, and operands ordered so the cheapest, most decisive checks run
+     * first. A conjunction tries first what is cheap and likely to fail, a disjunction what is
+     * cheap and likely to match. Operands with the same rank keep their order.
+     *
+     * @param predicate the predicate
+     * @return an equivalent predicate
+     */
+    static Predicate<DeviceData> optimize(Predicate<DeviceData> predicate) {
+        if (predicate instanceof Not) {
+            Predicate<DeviceData> operand = optimize(((Not) predicate).getOperand());
+            return (operand instanceof Not) ? ((Not) operand).getOperand() : new Not(operand);
+        }
+        if (predicate instanceof And || predicate instanceof Or) {
+            boolean and = predicate instanceof And;
+            List<Predicate<DeviceData>> operands = new ArrayList<>();
+            for (Predicate<DeviceData> operand : and ? ((And) predicate).getOperands() : ((Or) predicate).getOperands()) {
+                Predicate<DeviceData> optimized = optimize(operand);
+                if (and && optimized instanceof And) {
+                    operands.addAll(((And) optimized).getOperands());
+                } else if (!and && optimized instanceof Or) {
+                    operands.addAll(((Or) optimized).getOperands());
+                } else {
+                    operands.add(optimized);
+                }
+            }
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            // rank by expected cost per decided device
+            operands.sort(Comparator.comparingDouble(operand -> cost(operand)
+                    / Math.max(1e-9, and ? 1 - selectivity(operand) : selectivity(operand))));
+            return and ? new And(operands) : new Or(operands);
+        }
+        return predicate;
+    }
+
+    private static double cost(Predicate<DeviceData> predicate) {
+        return (predicate instanceof SearchPredicate) ? ((SearchPredicate) predicate).cost() : OPAQUE_COST;
+    }
+
+    private static double selectivity(Predicate<DeviceData> predicate) {
+        return (predicate instanceof SearchPredicate) ? ((SearchPredicate) predicate).selectivity() : OPAQUE_SELECTIVITY;
+    }
+
+    /**
+     * Server filter for the part of a predicate that is a conjunction of exact matches. Anything
+     * else (disjunctions, opaque lambdas) is left out and must be evaluated locally.
+     *
+     * @param predicate the predicate
+     * @return the filter, empty when nothing can be pushed down
+     */
+    static Map<String, String> serverFilter(Predicate<DeviceData> predicate) {
+        Map<String, String> filter = new LinkedHashMap<>();
+        collectFilter(predicate, filter);
+        return filter;
+    }
+
+    private static void collectFilter(Predicate<DeviceData> predicate, Map<String, String> filter) {
+        if (predicate instanceof Match) {
+            Match match = (Match) predicate;
+            if (match.getValue() == null) {
+                return;
+            }
+            // conflicting matches select nothing; the local check takes care of that
+            filter.putIfAbsent(match.getField().getFilterKey(match.getKey()), match.getValue());
+        } else if (predicate instanceof And) {
+            ((And) predicate).getOperands().forEach(operand -> collectFilter(operand, filter));
+        }
+    }
+
+    /**
+     * Device ids a predicate is restricted to, when it can only match devices named by id: an id
+     * match, a disjunction of those, or a conjunction with at least one of them.
+     *
+     * @param predicate the predicate
+     * @return the device ids, or null when the predicate may match other devices
+     */
+    static Set<String> deviceIds(Predicate<DeviceData> predicate) {
+        if (predicate instanceof Match) {
+            Match match = (Match) predicate;
+            if (match.getField() != Field.DEVICE_ID) {
+                return null;
+            }
+            Set<String> ids = new LinkedHashSet<>();
+            if (match.getValue() != null) {
+                ids.add(match.getValue());
+            }
+            return ids;
+        }
+        if (predicate instanceof In) {
+            In in = (In) predicate;
+            return (in.getField() == Field.DEVICE_ID) ? new LinkedHashSet<>(in.getValues()) : null;
+        }
+        if (predicate instanceof Or) {
+            Set<String> ids = new LinkedHashSet<>();
+            for (Predicate<DeviceData> operand : ((Or) predicate).getOperands()) {
+                Set<String> operandIds = deviceIds(operand);
+                if (operandIds == null) {
+                    return null;
+                }
+                ids.addAll(operandIds);
+            }
+            return ids;
+        }
+        if (predicate instanceof And) {
+            Set<String> ids = null;
+            for (Predicate<DeviceData> operand : ((And) predicate).getOperands()) {
+                Set<String> operandIds = deviceIds(operand);
+                if (operandIds == null) {
+                    continue;
+                }
+                if (ids == null) {
+                    ids = operandIds;
+                } else {
+                    ids.retainAll(operandIds);
+                }
+            }
+            return ids;
+        }
+        return null;
+    }
+
+    /**
+     * The type Match. Exact match of a field value.
+     */
+    public static final class Match extends SearchPredicate {
+        private final Field field;
+        private final String key;
+        private final String value;
+
+        /**
+         * Instantiates a new Match.
+         *
+         * @param field the field
+         * @param value the value
+         */
+        Match(Field field, String value) {
+            this(field, null, value);
+        }
+
+        /**
+         * Instantiates a new Match on a keyed field.
+         *
+         * @param field the field
+         * @param key   the map key
+         * @param value the value
+         */
+        Match(Field field, String key, String value) {
+            if (field.isKeyed() && key == null) {
+                throw new IllegalArgumentException("key must be provided");
+            }
+            this.field = field;
+            this.key = key;
+            this.value = value;
+        }
+
+        /**
+         * Gets field.
+         *
+         * @return the field
+         */
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * Gets key.
+         *
+         * @return the map key, or null for fields that are not keyed
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Gets value.
+         *
+         * @return the value
+         */
+        public String getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean test(DeviceData device) {
+            return value != null && value.equals(field.valueOf(device, key));
+        }
+
+        @Override
+        double cost() {
+            return field.cost;
+        }
+
+        @Override
+        double selectivity() {
+            if (value == null) {
+                return 0;
+            }
+            return (field == Field.DEVICE_ID || field == Field.NAME) ? 0.01 : field.selectivity;
+        }
+
+        @Override
+        public String toString() {
+            return field.name().toLowerCase() + (key != null ? "." + key : "") + "=" + value;
+        }
+    }
+
+    /**
+     * The type And. Matches when every operand matches.
+     */
+    public static final class And extends SearchPredicate {
+        private final List<Predicate<DeviceData>> operands;
+
+        /**
+         * Instantiates a new And.
+         *
+         * @param operands the operands
+         */
+        And(List<Predicate<DeviceData>> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        /**
+         * Gets operands.
+         *
+         * @return the operands
+         */
+        public List<Predicate<DeviceData>> getOperands() {
+            return operands;
+        }
+
+        @Override
+        public boolean test(DeviceData device) {
+            for (Predicate<DeviceData> pred : operands) {
+                if (!pred.test(device)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        double cost() {
+            // later operands only run on devices the earlier ones let through
+            double cost = 0;
+            double reached = 1;
+            for (Predicate<DeviceData> operand : operands) {
+                cost += reached * SearchPredicate.cost(operand);
+                reached *= SearchPredicate.selectivity(operand);
+            }
+            return cost;
+        }
+
+        @Override
+        double selectivity() {
+            double selectivity = 1;
+            for (Predicate<DeviceData> operand : operands) {
+                selectivity *= SearchPredicate.selectivity(operand);
+            }
+            return selectivity;
+        }
+
+        @Override
+        public String toString() {
+            return operands.stream().map(String::valueOf).collect(Collectors.joining(" AND ", "(", ")"));
+        }
+    }
+
+    /**
+     * The type Or. Matches when any operand matches.
+     */
+    public static final class Or extends SearchPredicate {
+        private final List<Predicate<DeviceData>> operands;
+
+        /**
+         * Instantiates a new Or.
+         *
+         * @param operands the operands
+         */
+        Or(List<Predicate<DeviceData>> operands) {
+            this.operands = Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+
+        /**
+         * Gets operands.
+         *
+         * @return the operands
+         */
+        public List<Predicate<DeviceData>> getOperands() {
+            return operands;
+        }
+
+        @Override
+        public boolean test(DeviceData device) {
+            for (Predicate<DeviceData> pred : operands) {
+                if (pred.test(device)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        double cost() {
+            // later operands only run on devices the earlier ones did not match
+            double cost = 0;
+            double reached = 1;
+            for (Predicate<DeviceData> operand : operands) {
+                cost += reached * SearchPredicate.cost(operand);
+                reached *= 1 - SearchPredicate.selectivity(operand);
+            }
+            return cost;
+        }
+
+        @Override
+        double selectivity() {
+            double misses = 1;
+            for (Predicate<DeviceData> operand : operands) {
+                misses *= 1 - SearchPredicate.selectivity(operand);
+            }
+            return 1 - misses;
+        }
+
+        @Override
+        public String toString() {
+            return operands.stream().map(String::valueOf).collect(Collectors.joining(" OR ", "(", ")"));
+        }
+    }
+
+    /**
+     * The type In. Matches when a field holds any of a set of values.
+     */
+    public static final class In extends SearchPredicate {
+        private final Field field;
+        private final String key;
+        private final Set<String> values;
+
+        /**
+         * Instantiates a new In.
+         *
+         * @param field  the field
+         * @param key    the map key of a keyed field, null otherwise
+         * @param values the values
+         */
+        In(Field field, String key, Collection<String> values) {
+            if (field.isKeyed() && key == null) {
+                throw new IllegalArgumentException("key must be provided");
+            }
+            this.field = field;
+            this.key = key;
+            this.values = Collections.unmodifiableSet(new LinkedHashSet<>(values));
+        }
+
+        /**
+         * Gets field.
+         *
+         * @return the field
+         */
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * Gets key.
+         *
+         * @return the map key, or null for fields that are not keyed
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Gets values.
+         *
+         * @return the values
+         */
+        public Set<String> getValues() {
+            return values;
+        }
+
+        @Override
+        public boolean test(DeviceData device) {
+            String value = field.valueOf(device, key);
+            return value != null && values.contains(value);
+        }
+
+        @Override
+        double cost() {
+            return field.cost + 1;
+        }
+
+        @Override
+        double selectivity() {
+            double single = (field == Field.DEVICE_ID || field == Field.NAME) ? 0.01 : field.selectivity;
+            return Math.min(1, single * values.size());
+        }
+
+        @Override
+        public String toString() {
+            return field.name().toLowerCase() + (key != null ? "." + key : "") + " IN (" + String.join(",", values) + ")";
+        }
+    }
+
+    /**
+     * The type Is. Matches when a flag is set on a device.
+     */
+    public static final class Is extends SearchPredicate {
+        private final Flag flag;
+        private final String key;
+
+        /**
+         * Instantiates a new Is.
+         *
+         * @param flag the flag
+         * @param key  the name of a keyed flag, null otherwise
+         */
+        Is(Flag flag, String key) {
+            if (flag.isKeyed() && key == null) {
+                throw new IllegalArgumentException("key must be provided");
+            }
+            this.flag = flag;
+            this.key = key;
+        }
+
+        /**
+         * Gets flag.
+         *
+         * @return the flag
+         */
+        public Flag getFlag() {
+            return flag;
+        }
+
+        /**
+         * Gets key.
+         *
+         * @return the name of a keyed flag, or null
+         */
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public boolean test(DeviceData device) {
+            return flag.isSet(device, key);
+        }
+
+        @Override
+        double cost() {
+            return flag.cost;
+        }
+
+        @Override
+        double selectivity() {
+            return flag.selectivity;
+        }
+
+        @Override
+        public String toString() {
+            return flag.name().toLowerCase() + (key != null ? "." + key : "");
+        }
+    }
+
+    /**
+     * The type Not. Matches when its operand does not.
+     */
+    public static final class Not extends SearchPredicate {
+        private final Predicate<DeviceData> operand;
+
+        /**
+         * Instantiates a new Not.
+         *
+         * @param operand the operand
+         */
+        Not(Predicate<DeviceData> operand) {
+            this.operand = operand;
+        }
+
+        /**
+         * Gets operand.
+         *
+         * @return the operand
+         */
+        public Predicate<DeviceData> getOperand() {
+            return operand;
+        }
+
+        @Override
+        public boolean test(DeviceData device) {
+            return !operand.test(device);
+        }
+
+        @Override
+        double cost() {
+            return SearchPredicate.cost(operand);
+        }
+
+        @Override
+        double selectivity() {
+            return 1 - SearchPredicate.selectivity(operand);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+}
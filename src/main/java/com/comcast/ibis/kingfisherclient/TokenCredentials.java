@@ -0,0 +1,76 @@
+package com.comcast.ibis.kingfisherclient;
+
+import io.grpc.CallCredentials;
+import io.grpc.Metadata;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The type Token credentials. Attaches the authorization header to every call. The header is
+ * built once per token and swapped atomically when the token changes, so calls do not allocate it.
+ * The header and its value are swapped together, so readers never see one token's header with
+ * another token's value.
+ */
+class TokenCredentials extends CallCredentials {
+    private static final Metadata.Key<String> AUTHORIZATION = Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final AtomicReference<Header> header = new AtomicReference<>();
+
+    /**
+     * Instantiates a new Token credentials.
+     *
+     * @param token     the token
+     * @param tokenType the token type
+     */
+    TokenCredentials(String token, KingfisherClient.KingfisherClientBuilder.TokenType tokenType) {
+        update(token, tokenType);
+    }
+
+    /**
+     * Replace the token used by subsequent calls.
+     *
+     * @param token     the token
+     * @param tokenType the token type
+     */
+    void update(String token, KingfisherClient.KingfisherClientBuilder.TokenType tokenType) {
+        Metadata next = new Metadata();
+        String value;
+        if(tokenType.equals(KingfisherClient.KingfisherClientBuilder.TokenType.BEARER)) {
+            value = "bearer " + token;
+        } else {
+            value = "apikey " + token;
+        }
+        next.put(AUTHORIZATION, value);
+        header.set(new Header(value, next));
+    }
+
+    /**
+     * Authorization string.
+     *
+     * @return the current authorization header value, e.g. "apikey ..."
+     */
+    String authorization() {
+        return header.get().authorization;
+    }
+
+    @Override
+    public void applyRequestMetadata(RequestInfo requestInfo, Executor executor, MetadataApplier metadataApplier) {
+        // the applier merges the entries into the call headers and never mutates this instance
+        metadataApplier.apply(header.get().metadata);
+    }
+
+    @Override
+    public void thisUsesUnstableApi() {
+    }
+
+    private static final class Header {
+        private final String authorization;
+        private final Metadata metadata;
+
+        private Header(String authorization, Metadata metadata) {
+            this.authorization = authorization;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.comcast.ibis.kingfisherclient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The type Transport options. Connection level tuning of the channels a client opens.
+ */
+public class TransportOptions {
+
+    /**
+     * The enum Security.
+     */
+    public enum Security {
+        /**
+         * Plaintext for localhost targets, TLS otherwise.
+         */
+        AUTO,
+        /**
+         * Plaintext security.
+         */
+        PLAINTEXT,
+        /**
+         * Tls security.
+         */
+        TLS
+    }
+
+    /**
+     * The enum Channel selection, how a call picks one of the pooled channels.
+     */
+    public enum ChannelSelection {
+        /**
+         * Round robin channel selection.
+         */
+        ROUND_ROBIN,
+        /**
+         * Channel with the fewest calls in flight.
+         */
+        LEAST_OUTSTANDING
+    }
+
+    private final int channelCount;
+    private final ChannelSelection channelSelection;
+    private final Security security;
+    private final long keepAliveTimeMillis;
+    private final long keepAliveTimeoutMillis;
+    private final boolean keepAliveWithoutCalls;
+    private final int flowControlWindow;
+    private final int maxInboundMessageSize;
+    private final boolean nativeTransport;
+
+    private TransportOptions(TransportOptionsBuilder builder) {
+        this.channelCount = builder.channelCount;
+        this.channelSelection = builder.channelSelection;
+        this.security = builder.security;
+        this.keepAliveTimeMillis = builder.keepAliveTimeMillis;
+        this.keepAliveTimeoutMillis = builder.keepAliveTimeoutMillis;
+        this.keepAliveWithoutCalls = builder.keepAliveWithoutCalls;
+        this.flowControlWindow = builder.flowControlWindow;
+        this.maxInboundMessageSize = builder.maxInboundMessageSize;
+        this.nativeTransport = builder.nativeTransport;
+    }
+
+    /**
+     * Default transport options.
+     *
+     * @return the transport options
+     */
+    public static TransportOptions defaults() {
+        return newBuilder().build();
+    }
+
+    /**
+     * New builder transport options builder.
+     *
+     * @return the transport options builder
+     */
+    public static TransportOptionsBuilder newBuilder() { return new TransportOptionsBuilder(); }
+
+    /**
+     * Gets channel count.
+     *
+     * @return the channel count
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * Gets channel selection.
+     *
+     * @return the channel selection
+     */
+    public ChannelSelection getChannelSelection() {
+        return channelSelection;
+    }
+
+    /**
+     * Gets security.
+     *
+     * @return the security
+     */
+    public Security getSecurity() {
+        return security;
+    }
+
+    /**
+     * Gets keep alive time millis.
+     *
+     * @return the keep alive time, 0 when keepalive is disabled
+     */
+    public long getKeepAliveTimeMillis() {
+        return keepAliveTimeMillis;
+    }
+
+    /**
+     * Gets keep alive timeout millis.
+     *
+     * @return the keep alive timeout, 0 for the transport default
+     */
+    public long getKeepAliveTimeoutMillis() {
+        return keepAliveTimeoutMillis;
+    }
+
+    /**
+     * Is keep alive without calls boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isKeepAliveWithoutCalls() {
+        return keepAliveWithoutCalls;
+    }
+
+    /**
+     * Gets flow control window.
+     *
+     * @return the flow control window in bytes, 0 for the transport default
+     */
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    /**
+     * Gets max inbound message size.
+     *
+     * @return the max inbound message size in bytes, 0 for the transport default
+     */
+    public int getMaxInboundMessageSize() {
+        return maxInboundMessageSize;
+    }
+
+    /**
+     * Is native transport boolean.
+     *
+     * @return whether the native epoll transport is used when available
+     */
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    /**
+     * The type Transport options builder.
+     */
+    public static class TransportOptionsBuilder {
+        private int channelCount = 1;
+        private ChannelSelection channelSelection = ChannelSelection.ROUND_ROBIN;
+        private Security security = Security.AUTO;
+        private long keepAliveTimeMillis;
+        private long keepAliveTimeoutMillis;
+        private boolean keepAliveWithoutCalls;
+        private int flowControlWindow;
+        private int maxInboundMessageSize;
+        private boolean nativeTransport = true;
+
+        /**
+         * Instantiates a new Transport options builder.
+         */
+        public TransportOptionsBuilder() { }
+
+        /**
+         * Sets the number of channels, each its own HTTP/2 connection, calls are spread over.
+         *
+         * @param channelCount the channel count
+         * @return the channel count
+         */
+        public TransportOptionsBuilder setChannelCount(int channelCount) {
+            if (channelCount < 1) {
+                throw new IllegalArgumentException("channel count must be positive");
+            }
+            this.channelCount = channelCount;
+            return this;
+        }
+
+        /**
+         * Sets channel selection.
+         *
+         * @param channelSelection the channel selection
+         * @return the channel selection
+         */
+        public TransportOptionsBuilder setChannelSelection(ChannelSelection channelSelection) {
+            this.channelSelection = channelSelection;
+            return this;
+        }
+
+        /**
+         * Sets security.
+         *
+         * @param security the security
+         * @return the security
+         */
+        public TransportOptionsBuilder setSecurity(Security security) {
+            this.security = security;
+            return this;
+        }
+
+        /**
+         * Sets keep alive.
+         *
+         * @param time    the time without reads before a keepalive ping is sent
+         * @param timeout the time to wait for the ping acknowledgement
+         * @param unit    the unit
+         * @return the keep alive
+         */
+        public TransportOptionsBuilder setKeepAlive(long time, long timeout, TimeUnit unit) {
+            this.keepAliveTimeMillis = unit.toMillis(time);
+            this.keepAliveTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Sets keep alive without calls.
+         *
+         * @param keepAliveWithoutCalls whether idle connections are pinged too
+         * @return the keep alive without calls
+         */
+        public TransportOptionsBuilder setKeepAliveWithoutCalls(boolean keepAliveWithoutCalls) {
+            this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+            return this;
+        }
+
+        /**
+         * Sets flow control window.
+         *
+         * @param flowControlWindow the flow control window in bytes
+         * @return the flow control window
+         */
+        public TransportOptionsBuilder setFlowControlWindow(int flowControlWindow) {
+            this.flowControlWindow = flowControlWindow;
+            return this;
+        }
+
+        /**
+         * Sets max inbound message size.
+         *
+         * @param maxInboundMessageSize the max inbound message size in bytes
+         * @return the max inbound message size
+         */
+        public TransportOptionsBuilder setMaxInboundMessageSize(int maxInboundMessageSize) {
+            this.maxInboundMessageSize = maxInboundMessageSize;
+            return this;
+        }
+
+        /**
+         * Sets native transport.
+         *
+         * @param nativeTransport whether to use the native epoll transport when available
+         * @return the native transport
+         */
+        public TransportOptionsBuilder setNativeTransport(boolean nativeTransport) {
+            this.nativeTransport = nativeTransport;
+            return this;
+        }
+
+        /**
+         * Build transport options.
+         *
+         * @return the transport options
+         */
+        public TransportOptions build() {
+            return new TransportOptions(this);
+        }
+    }
+}
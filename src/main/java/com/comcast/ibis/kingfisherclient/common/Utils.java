@@ -5,10 +5,20 @@ import com.comcast.ibis.kingfisher.OwnerSpec;
 import com.comcast.ibis.kingfisherclient.Device;
 import com.comcast.ibis.kingfisher.DeviceData;
 import com.comcast.ibis.kingfisher.KingfisherGrpc;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.protobuf.ByteString;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 
 /**
@@ -45,4 +55,67 @@ public class Utils {
         OwnerSpec ownerSpec = (!userId.isEmpty()) ? OwnerSpec.newBuilder().setUser(userId).build() : (!groupId.isEmpty() ? OwnerSpec.newBuilder().setGroup(groupId).build() : null);
         return ownerSpec;
     }
+
+    /**
+     * Adapts a listenable future to a completable future completed on the given executor.
+     *
+     * @param <T>      the result type
+     * @param future   the listenable future
+     * @param executor the executor the result is completed on
+     * @return the completable future
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> future, Executor executor) {
+        return toCompletableFuture(future, Function.identity(), executor);
+    }
+
+    /**
+     * Adapts a listenable future to a completable future, mapping the result on the given executor.
+     * Cancelling the returned future cancels the underlying call.
+     *
+     * @param <T>      the response type
+     * @param <R>      the result type
+     * @param future   the listenable future
+     * @param mapper   the result mapper
+     * @param executor the executor the result is completed on
+     * @return the completable future
+     */
+    public static <T, R> CompletableFuture<R> toCompletableFuture(ListenableFuture<T> future, Function<? super T, ? extends R> mapper, Executor executor) {
+        CompletableFuture<R> result = new CompletableFuture<R>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                future.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        future.addListener(() -> {
+            try {
+                result.complete(mapper.apply(future.get()));
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (CancellationException e) {
+                result.cancel(false);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, executor);
+        return result;
+    }
+
+    /**
+     * Write the bytes of a byte string to a channel without copying them into an intermediate array.
+     *
+     * @param bytes   the bytes
+     * @param channel the channel
+     * @return the number of bytes written
+     * @throws IOException the io exception
+     */
+    public static long writeTo(ByteString bytes, WritableByteChannel channel) throws IOException {
+        long written = 0;
+        for (ByteBuffer buffer : bytes.asReadOnlyByteBufferList()) {
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+        }
+        return written;
+    }
 }
@@ -0,0 +1,180 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+import com.comcast.ibis.kingfisher.DeviceFlags;
+import com.comcast.ibis.kingfisher.DeviceMetadata;
+import com.comcast.ibis.kingfisher.DeviceReference;
+import com.comcast.ibis.kingfisher.DeviceReservation;
+import com.comcast.ibis.kingfisher.RackData;
+import com.comcast.ibis.kingfisher.UserReference;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeviceIndexTest {
+    private static final String[] MAKES = {"Arris", "Samsung", "Sony", ""};
+    private static final String[] RACKS = {"rack-1", "rack-2", "rack-3"};
+    private static final String[] ENVIRONMENTS = {"qa", "stage", "prod", ""};
+    private static final String[] USERS = {"alice", "bob"};
+
+    private final List<DeviceData> devices = devices(300, new Random(7));
+    private final DeviceIndex index = DeviceIndex.build(devices);
+
+    @Test
+    public void selectsByMatch() {
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.MAKE, "Arris"));
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.MAKE, ""));
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.MAKE, "Unknown"));
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.MAKE, null));
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.DEVICE_ID, "id-17"));
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.RESERVED_BY, "alice"));
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.LABEL, "env", "qa"));
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.LABEL, "env", ""));
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.LABEL, "missing", "qa"));
+        // not indexed, evaluated on every device
+        assertSelects(new SearchPredicate.Match(SearchPredicate.Field.RACKDATA, "slot_name", "slot-1"));
+    }
+
+    @Test
+    public void selectsByIn() {
+        assertSelects(new SearchPredicate.In(SearchPredicate.Field.MAKE, null, Arrays.asList("Arris", "Sony")));
+        assertSelects(new SearchPredicate.In(SearchPredicate.Field.LABEL, "env", Arrays.asList("qa", "missing")));
+        assertSelects(new SearchPredicate.In(SearchPredicate.Field.RACKDATA, "slot_name", Arrays.asList("slot-1", "slot-2")));
+    }
+
+    @Test
+    public void selectsByNot() {
+        assertSelects(new SearchPredicate.Not(new SearchPredicate.Match(SearchPredicate.Field.MAKE, "Arris")));
+        assertSelects(new SearchPredicate.Not(new SearchPredicate.Match(SearchPredicate.Field.LABEL, "missing", "qa")));
+        assertSelects(new SearchPredicate.Not(new SearchPredicate.In(SearchPredicate.Field.LABEL, "env", Arrays.asList("qa", "prod"))));
+        assertSelects(new SearchPredicate.Not(new SearchPredicate.Is(SearchPredicate.Flag.HAS_VIDEO, null)));
+        // the complement of an inexact candidate set must not be trusted
+        assertSelects(new SearchPredicate.Not(and(
+                new SearchPredicate.Match(SearchPredicate.Field.MAKE, "Arris"),
+                new SearchPredicate.Is(SearchPredicate.Flag.HAS_VIDEO, null))));
+    }
+
+    @Test
+    public void selectsByAndOr() {
+        assertSelects(and(
+                new SearchPredicate.Match(SearchPredicate.Field.MAKE, "Arris"),
+                new SearchPredicate.Match(SearchPredicate.Field.LABEL, "env", "qa")));
+        assertSelects(and(
+                new SearchPredicate.Match(SearchPredicate.Field.RACK_NAME, "rack-1"),
+                new SearchPredicate.Is(SearchPredicate.Flag.HAS_VIDEO, null)));
+        assertSelects(or(
+                new SearchPredicate.Match(SearchPredicate.Field.MAKE, "Arris"),
+                new SearchPredicate.Match(SearchPredicate.Field.LABEL, "env", "qa")));
+        assertSelects(or(
+                new SearchPredicate.Match(SearchPredicate.Field.MAKE, "Arris"),
+                new SearchPredicate.Is(SearchPredicate.Flag.RESERVED, null)));
+        assertSelects(and(
+                new SearchPredicate.Not(new SearchPredicate.Match(SearchPredicate.Field.MAKE, "Sony")),
+                or(new SearchPredicate.Match(SearchPredicate.Field.RACK_NAME, "rack-2"),
+                        device -> device.getReference().getDevice().endsWith("3"))));
+    }
+
+    @Test
+    public void selectsLikeLinearFilterForRandomTrees() {
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i++) {
+            Predicate<DeviceData> predicate = tree(random, 4);
+            assertSelects(predicate);
+            assertSelects(SearchPredicate.optimize(predicate));
+        }
+    }
+
+    private void assertSelects(Predicate<DeviceData> predicate) {
+        List<DeviceData> expected = devices.stream().filter(predicate).collect(Collectors.toList());
+        assertEquals(String.valueOf(predicate), ids(expected), ids(index.select(predicate)));
+    }
+
+    private static List<String> ids(List<DeviceData> devices) {
+        return devices.stream().map(device -> device.getReference().getDevice()).collect(Collectors.toList());
+    }
+
+    private static Predicate<DeviceData> tree(Random random, int depth) {
+        int kind = random.nextInt(depth > 0 ? 8 : 4);
+        switch (kind) {
+            case 0:
+                return new SearchPredicate.Match(SearchPredicate.Field.MAKE, pick(random, MAKES));
+            case 1:
+                return new SearchPredicate.Match(SearchPredicate.Field.LABEL, random.nextBoolean() ? "env" : "missing",
+                        pick(random, ENVIRONMENTS));
+            case 2:
+                return new SearchPredicate.In(SearchPredicate.Field.RACK_NAME, null,
+                        Arrays.asList(pick(random, RACKS), pick(random, RACKS), "rack-9"));
+            case 3:
+                switch (random.nextInt(3)) {
+                    case 0:
+                        return new SearchPredicate.Is(SearchPredicate.Flag.HAS_VIDEO, null);
+                    case 1:
+                        return new SearchPredicate.Match(SearchPredicate.Field.RESERVED_BY, pick(random, USERS));
+                    default:
+                        return new SearchPredicate.Match(SearchPredicate.Field.RACKDATA, "slot_name", "slot-" + random.nextInt(4));
+                }
+            case 4:
+            case 5:
+                return new SearchPredicate.Not(tree(random, depth - 1));
+            case 6:
+                return new SearchPredicate.And(operands(random, depth));
+            default:
+                return new SearchPredicate.Or(operands(random, depth));
+        }
+    }
+
+    private static List<Predicate<DeviceData>> operands(Random random, int depth) {
+        List<Predicate<DeviceData>> operands = new ArrayList<>();
+        int count = 2 + random.nextInt(2);
+        for (int i = 0; i < count; i++) {
+            operands.add(tree(random, depth - 1));
+        }
+        return operands;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    @SafeVarargs
+    private static Predicate<DeviceData> and(Predicate<DeviceData>... operands) {
+        return new SearchPredicate.And(Arrays.asList(operands));
+    }
+
+    @SafeVarargs
+    private static Predicate<DeviceData> or(Predicate<DeviceData>... operands) {
+        return new SearchPredicate.Or(Arrays.asList(operands));
+    }
+
+    private static List<DeviceData> devices(int size, Random random) {
+        List<DeviceData> devices = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            DeviceMetadata.Builder metadata = DeviceMetadata.newBuilder().setName("device-" + i);
+            if (random.nextInt(4) > 0) {
+                metadata.putLabels("env", pick(random, ENVIRONMENTS));
+            }
+            if (random.nextInt(3) == 0) {
+                metadata.setReservation(DeviceReservation.newBuilder()
+                        .setUser(UserReference.newBuilder().setUser(pick(random, USERS))));
+            }
+            devices.add(DeviceData.newBuilder()
+                    .setReference(DeviceReference.newBuilder().setDevice("id-" + i))
+                    .setMetadata(metadata)
+                    .setRackdata(RackData.newBuilder()
+                            .setDeviceMake(pick(random, MAKES))
+                            .setRackName(pick(random, RACKS))
+                            .setSlotName("slot-" + random.nextInt(4)))
+                    .setDeviceFlags(DeviceFlags.newBuilder().setHasVideo(random.nextBoolean()))
+                    .build());
+        }
+        return Collections.unmodifiableList(devices);
+    }
+}
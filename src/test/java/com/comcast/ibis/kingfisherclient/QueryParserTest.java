@@ -0,0 +1,110 @@
+package com.comcast.ibis.kingfisherclient;
+
+import com.comcast.ibis.kingfisher.DeviceData;
+import com.comcast.ibis.kingfisher.DeviceFlags;
+import com.comcast.ibis.kingfisher.DeviceMetadata;
+import com.comcast.ibis.kingfisher.RackData;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QueryParserTest {
+    private static final DeviceData DEVICE = DeviceData.newBuilder()
+            .setMetadata(DeviceMetadata.newBuilder().setName("living room").putLabels("env", "qa"))
+            .setRackdata(RackData.newBuilder().setDeviceMake("Arris").setRackName("rack-1"))
+            .setDeviceFlags(DeviceFlags.newBuilder().setHasVideo(true))
+            .build();
+
+    @Test
+    public void andBindsTighterThanOr() {
+        assertParsed("(make=a OR (make=b AND rack_name=r))", "make=a OR make=b AND rack=r");
+        assertParsed("((make=a AND make=b) OR rack_name=r)", "make=a AND make=b OR rack=r");
+        assertParsed("((make=a OR make=b) AND rack_name=r)", "(make=a OR make=b) AND rack=r");
+    }
+
+    @Test
+    public void notBindsTighterThanAnd() {
+        assertParsed("(NOT make=a AND rack_name=r)", "NOT make=a AND rack=r");
+        assertParsed("NOT (make=a AND rack_name=r)", "NOT (make=a AND rack=r)");
+        assertParsed("NOT NOT make=a", "NOT NOT make=a");
+    }
+
+    @Test
+    public void keywordsAreCaseInsensitive() {
+        assertParsed("(NOT make=a OR label.env IN (qa,stage))", "not make=a or label.env in (qa, stage)");
+    }
+
+    @Test
+    public void parsesComparisons() {
+        assertParsed("NOT make=a", "make != a");
+        assertParsed("label.env IN (qa,stage)", "label.env IN (qa,stage)");
+        assertParsed("NOT label.env IN (qa,stage)", "label.env NOT IN (qa,stage)");
+        // a single value list is a plain match
+        assertParsed("make=a", "make IN (a)");
+        assertParsed("rack_name=r", "rackdata.rack_name=r");
+        assertParsed("rackdata.slot_name=s", "rackdata.slot_name=s");
+    }
+
+    @Test
+    public void parsesFlags() {
+        assertParsed("has_video", "has_video");
+        assertParsed("has_video", "flags.has_video = true");
+        assertParsed("NOT has_video", "flags.has_video = false");
+        assertParsed("NOT has_video", "has_video != true");
+        assertParsed("feature.voice", "feature.voice");
+    }
+
+    @Test
+    public void parsesQuotedValues() {
+        assertParsed("name=living room", "name = 'living room'");
+        assertParsed("name=living room", "name = \"living room\"");
+        assertParsed("name=it's", "name = 'it\\'s'");
+        assertParsed("make=AND", "make = 'AND'");
+        assertParsed("label.env IN (a b,c)", "label.env IN ('a b', c)");
+    }
+
+    @Test
+    public void matchesDevices() {
+        assertTrue(QueryParser.parse("name = 'living room' AND has_video").test(DEVICE));
+        assertTrue(QueryParser.parse("label.env IN (stage, qa) AND NOT make=Sony").test(DEVICE));
+        assertTrue(QueryParser.parse("make=Sony OR rack=rack-1").test(DEVICE));
+        assertFalse(QueryParser.parse("label.env NOT IN (qa)").test(DEVICE));
+        assertFalse(QueryParser.parse("label.missing=qa").test(DEVICE));
+        assertFalse(QueryParser.parse("NOT (make=Arris OR make=Sony)").test(DEVICE));
+    }
+
+    @Test
+    public void reportsErrorOffsets() {
+        assertError("expected a value", 5, "make=");
+        assertError("expected a value, got )", 11, "make IN (a,)");
+        assertError("expected a field or flag", 11, "make=a AND ");
+        assertError("expected a field or flag, got )", 11, "make=a AND )");
+        assertError("unknown field colour", 0, "colour=red");
+        assertError("unknown field colour", 11, "make=a AND colour=red");
+        assertError("unknown field device.nope", 0, "device.nope=x");
+        assertError("unexpected )", 6, "make=a)");
+        assertError("expected )", 7, "(make=a");
+        assertError("expected =, != or IN after make", 5, "make a");
+        assertError("expected (, got qa", 8, "make IN qa");
+        assertError("expected a value, got AND", 5, "make=AND");
+        assertError("expected true or false, got maybe", 10, "has_video=maybe");
+        assertError("unterminated string", 5, "name='open");
+        assertError("unexpected !", 0, "!make=a");
+    }
+
+    private static void assertParsed(String expected, String query) {
+        assertEquals(query, expected, String.valueOf(QueryParser.parse(query)));
+    }
+
+    private static void assertError(String message, int offset, String query) {
+        try {
+            QueryParser.parse(query);
+            fail("expected " + query + " to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message + " at " + offset + " in query: " + query, e.getMessage());
+        }
+    }
+}
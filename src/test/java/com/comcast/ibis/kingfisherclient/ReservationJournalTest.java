@@ -0,0 +1,182 @@
+package com.comcast.ibis.kingfisherclient;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReservationJournalTest {
+    private static final long LEASE = Long.MAX_VALUE / 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysLiveReservations() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            assertTrue(journal.open().isEmpty());
+            journal.locked("a", "secret-a", LEASE);
+            journal.locked("b", "secret-b", 0);
+            journal.locked("c", "secret-c", LEASE);
+            journal.renewed("a", "secret-a2", LEASE + 1);
+            journal.released("b");
+        }
+
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            Map<String, ReservationJournal.Entry> live = journal.open();
+            assertEquals(Arrays.asList("a", "c"), new ArrayList<>(live.keySet()));
+            assertEquals("secret-a2", live.get("a").getSecret());
+            assertEquals(LEASE + 1, live.get("a").getExpiresAtMillis());
+            assertEquals("c", live.get("c").getDeviceId());
+        }
+    }
+
+    @Test
+    public void dropsExpiredReservations() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            journal.open();
+            journal.locked("expired", "secret", 1);
+            journal.locked("unknown-expiry", "secret", 0);
+        }
+
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            assertEquals(Arrays.asList("unknown-expiry"), new ArrayList<>(journal.open().keySet()));
+        }
+    }
+
+    @Test
+    public void stopsReplayAtTornRecord() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            journal.open();
+            journal.locked("a", "secret-a", LEASE);
+            journal.locked("b", "secret-b", LEASE);
+        }
+
+        // flip a byte of the last record's payload, as if the crash hit while it was written
+        byte[] bytes = Files.readAllBytes(path);
+        List<Integer> records = recordOffsets(bytes);
+        assertEquals(2, records.size());
+        bytes[records.get(1) + 8 + 3] ^= 0x5a;
+        Files.write(path, bytes);
+
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            assertEquals(Arrays.asList("a"), new ArrayList<>(journal.open().keySet()));
+        }
+    }
+
+    @Test
+    public void stopsReplayAtTruncatedRecord() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            journal.open();
+            journal.locked("a", "secret-a", LEASE);
+            journal.locked("b", "secret-b", LEASE);
+        }
+
+        byte[] bytes = Files.readAllBytes(path);
+        List<Integer> records = recordOffsets(bytes);
+        Files.write(path, Arrays.copyOf(bytes, records.get(1) + 10));
+
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            assertEquals(Arrays.asList("a"), new ArrayList<>(journal.open().keySet()));
+        }
+    }
+
+    @Test
+    public void compactsWhenFull() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        StringBuilder secret = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            secret.append('s');
+        }
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            journal.open();
+            long size = Files.size(path);
+            journal.locked("kept", "kept-secret", LEASE);
+            // far more than one mapped region of churn, with a single reservation live throughout
+            for (int i = 0; i < 5000; i++) {
+                journal.locked("churn-" + i, secret.toString(), LEASE);
+                journal.released("churn-" + i);
+            }
+            journal.locked("last", "last-secret", LEASE);
+            assertEquals(size, Files.size(path));
+        }
+
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            Map<String, ReservationJournal.Entry> live = journal.open();
+            assertEquals(Arrays.asList("kept", "last"), new ArrayList<>(live.keySet()));
+            assertEquals("kept-secret", live.get("kept").getSecret());
+        }
+        assertFalse(Files.exists(path.resolveSibling("journal.tmp")));
+    }
+
+    @Test
+    public void ignoresReleaseOfUnknownDevice() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            journal.open();
+            journal.locked("a", "secret-a", LEASE);
+            journal.released("never-locked");
+            journal.released("a");
+            journal.released("a");
+        }
+
+        assertEquals(2, recordOffsets(Files.readAllBytes(path)).size());
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            assertTrue(journal.open().isEmpty());
+        }
+    }
+
+    @Test
+    public void rejectsSecondClient() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("journal");
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            journal.open();
+            try {
+                new ReservationJournal(path).open();
+                fail("expected the journal to be in use");
+            } catch (IllegalStateException expected) {
+                // the first client holds the lock file
+            }
+        }
+
+        try (ReservationJournal journal = new ReservationJournal(path)) {
+            assertTrue(journal.open().isEmpty());
+        }
+    }
+
+    /**
+     * The offsets of the records in a journal file, read with the same framing the journal uses:
+     * an 8 byte header, then per record its length, its checksum and its payload.
+     */
+    private static List<Integer> recordOffsets(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        List<Integer> offsets = new ArrayList<>();
+        int position = 8;
+        while (position + 8 <= bytes.length) {
+            int length = buffer.getInt(position);
+            if (length <= 0) {
+                break;
+            }
+            offsets.add(position);
+            position += 8 + length;
+        }
+        return offsets;
+    }
+}